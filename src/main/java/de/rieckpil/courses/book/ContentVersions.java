@@ -0,0 +1,61 @@
+package de.rieckpil.courses.book;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.rieckpil.courses.book.management.BookStoredEvent;
+import de.rieckpil.courses.book.review.ReviewChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class ContentVersions {
+
+  private final AtomicLong booksVersion = new AtomicLong();
+  private final AtomicLong reviewsVersion = new AtomicLong();
+  private final long maxAgeMillis;
+
+  public ContentVersions(@Value("${catalog.cache.time-to-live:PT5M}") Duration maxAge) {
+    this.maxAgeMillis = Math.max(1, maxAge.toMillis());
+  }
+
+  // runs after the caches have been patched so a new version never caches stale content
+  @EventListener
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void onBookStored(BookStoredEvent event) {
+    booksVersion.incrementAndGet();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onReviewChanged(ReviewChangedEvent event) {
+    reviewsVersion.incrementAndGet();
+  }
+
+  public long booksVersion() {
+    return booksVersion.get();
+  }
+
+  public long reviewsVersion() {
+    return reviewsVersion.get();
+  }
+
+  public String booksCacheVersion() {
+    return cacheVersion("books-" + booksVersion.get());
+  }
+
+  // reviews embed the book title and thumbnail, so they change with the catalog as well
+  public String reviewsCacheVersion() {
+    return cacheVersion("reviews-" + booksVersion.get() + "-" + reviewsVersion.get());
+  }
+
+  // writes on other nodes are not visible here, the time window bounds how long they stay hidden.
+  // Only valid within this process, the ETags are derived from the cached content instead.
+  private String cacheVersion(String version) {
+    long window = System.currentTimeMillis() / maxAgeMillis;
+    return version + "-" + window;
+  }
+}
@@ -0,0 +1,154 @@
+package de.rieckpil.courses.book;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+// keeps the encoded response bytes per endpoint and parameters, valid as long as the version
+// matches. The ETag is a hash of the content, so every node and every restart hands out the same
+// ETag for the same content. The gzip encoded response gets its own ETag, so caches never hand one
+// representation out for the other.
+@Component
+public class JsonResponseCache {
+
+  static final int MAX_ENTRIES = 256;
+  static final int MIN_GZIP_SIZE = 1024;
+
+  private final ObjectMapper objectMapper;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public JsonResponseCache(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  // answers conditional requests with 304 without serializing again while the version matches
+  public ResponseEntity<PreSerializedJson> respond(
+      String key, String version, Supplier<?> body, WebRequest webRequest) {
+
+    Entry entry = entries.get(key);
+
+    if (entry == null || !entry.version().equals(version)) {
+      entry = serialize(version, body.get());
+      evictIfFull(version);
+      entries.put(key, entry);
+    }
+
+    boolean gzip =
+        entry.gzipped() != null && acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    if (webRequest.checkNotModified(gzip ? gzipETag(entry.eTag()) : entry.eTag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+          .build();
+    }
+
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+    if (gzip) {
+      return response
+          .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .body(new PreSerializedJson(entry.gzipped()));
+    }
+
+    return response.body(new PreSerializedJson(entry.json()));
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  private Entry serialize(String version, Object body) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(body);
+      return new Entry(
+          version,
+          "\"" + DigestUtils.md5DigestAsHex(json) + "\"",
+          json,
+          json.length >= MIN_GZIP_SIZE ? gzip(json) : null);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unable to serialize response", e);
+    }
+  }
+
+  private void evictIfFull(String currentVersion) {
+    if (entries.size() < MAX_ENTRIES) {
+      return;
+    }
+
+    entries.values().removeIf(entry -> !entry.version().equals(currentVersion));
+
+    // e.g. many distinct page cursors for the same version
+    if (entries.size() >= MAX_ENTRIES) {
+      entries.clear();
+    }
+  }
+
+  // honours quality values, "gzip;q=0" refuses gzip and "*" stands for every coding not listed
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    Double gzip = null;
+    Double wildcard = null;
+    for (String element : acceptEncoding.split(",")) {
+      String[] parts = element.split(";");
+      String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+      if (coding.equals("gzip") || coding.equals("x-gzip")) {
+        gzip = Math.max(gzip == null ? 0 : gzip, quality(parts));
+      } else if (coding.equals("*")) {
+        wildcard = quality(parts);
+      }
+    }
+
+    if (gzip != null) {
+      return gzip > 0;
+    }
+    return wildcard != null && wildcard > 0;
+  }
+
+  private static double quality(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      String parameter = parameters[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  // "abc" becomes "abc-gzip", the suffix belongs inside the quotes
+  static String gzipETag(String eTag) {
+    return eTag.endsWith("\"") ? eTag.substring(0, eTag.length() - 1) + "-gzip\"" : eTag + "-gzip";
+  }
+
+  private static byte[] gzip(byte[] content) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream(content.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(result)) {
+      gzip.write(content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return result.toByteArray();
+  }
+
+  private record Entry(String version, String eTag, byte[] json, byte[] gzipped) {}
+}
@@ -0,0 +1,3 @@
+package de.rieckpil.courses.book;
+
+public record PreSerializedJson(byte[] content) {}
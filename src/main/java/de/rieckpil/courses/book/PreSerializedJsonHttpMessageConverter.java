@@ -0,0 +1,45 @@
+package de.rieckpil.courses.book;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+public class PreSerializedJsonHttpMessageConverter
+    extends AbstractHttpMessageConverter<PreSerializedJson> {
+
+  public PreSerializedJsonHttpMessageConverter() {
+    super(MediaType.APPLICATION_JSON);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return PreSerializedJson.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected PreSerializedJson readInternal(
+      Class<? extends PreSerializedJson> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException(
+        "Pre-serialized JSON is only used for responses", inputMessage);
+  }
+
+  @Override
+  protected Long getContentLength(PreSerializedJson json, MediaType contentType) {
+    return (long) json.content().length;
+  }
+
+  @Override
+  protected void writeInternal(PreSerializedJson json, HttpOutputMessage outputMessage)
+      throws IOException {
+    outputMessage.getBody().write(json.content());
+  }
+}
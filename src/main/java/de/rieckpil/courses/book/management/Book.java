@@ -4,10 +4,19 @@ import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 @Entity
 @Table(name = "books")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
+@NaturalIdCache(region = "books-by-isbn")
+// updates only write the columns that actually changed
+@DynamicUpdate
 public class Book {
 
   @Id
@@ -32,6 +41,14 @@ public class Book {
 
   private Long pages;
 
+  // validators for conditional revalidation against Open Library
+  @JsonIgnore private String metadataEtag;
+
+  @JsonIgnore private String metadataLastModified;
+
+  // where a locally stored cover was downloaded from
+  @JsonIgnore private String coverSourceUrl;
+
   public Long getId() {
     return id;
   }
@@ -104,6 +121,30 @@ public class Book {
     this.pages = pages;
   }
 
+  public String getMetadataEtag() {
+    return metadataEtag;
+  }
+
+  public void setMetadataEtag(String metadataEtag) {
+    this.metadataEtag = metadataEtag;
+  }
+
+  public String getMetadataLastModified() {
+    return metadataLastModified;
+  }
+
+  public void setMetadataLastModified(String metadataLastModified) {
+    this.metadataLastModified = metadataLastModified;
+  }
+
+  public String getCoverSourceUrl() {
+    return coverSourceUrl;
+  }
+
+  public void setCoverSourceUrl(String coverSourceUrl) {
+    this.coverSourceUrl = coverSourceUrl;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -0,0 +1,208 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// readers get an immutable snapshot without locking, writers replace it with a patched copy. Stored
+// books are queued and merged into the snapshot with a single copy once it's read again, so a bulk
+// import doesn't copy the whole catalog per book.
+@Component
+public class BookCatalogCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookCatalogCache.class.getName());
+
+  private final BookRepository bookRepository;
+  private final long timeToLiveNanos;
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+  private final AtomicLong modifications = new AtomicLong();
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+  private final Queue<Book> pendingPatches = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock patchLock = new ReentrantLock();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter rebuilds;
+  private final Counter patches;
+
+  public BookCatalogCache(
+      BookRepository bookRepository,
+      MeterRegistry meterRegistry,
+      @Value("${catalog.cache.time-to-live:PT5M}") Duration timeToLive) {
+    this.bookRepository = bookRepository;
+    this.timeToLiveNanos = timeToLive.toNanos();
+
+    this.hits = meterRegistry.counter("book.catalog.cache.requests", "result", "hit");
+    this.misses = meterRegistry.counter("book.catalog.cache.requests", "result", "miss");
+    this.rebuilds = meterRegistry.counter("book.catalog.cache.rebuilds");
+    this.patches = meterRegistry.counter("book.catalog.cache.patches");
+
+    Gauge.builder("book.catalog.cache.size", snapshot, BookCatalogCache::size)
+        .register(meterRegistry);
+  }
+
+  public List<Book> getAllBooks() {
+    Snapshot current = applyPendingPatches();
+
+    if (current != null && !current.isExpired(timeToLiveNanos)) {
+      hits.increment();
+      return current.books();
+    }
+
+    // an expired snapshot is still served while another thread is already rebuilding it
+    if (current != null && !rebuildLock.tryLock()) {
+      hits.increment();
+      return current.books();
+    }
+
+    if (current == null) {
+      rebuildLock.lock();
+    }
+
+    try {
+      Snapshot latest = snapshot.get();
+      if (latest != null && latest != current && !latest.isExpired(timeToLiveNanos)) {
+        hits.increment();
+        return latest.books();
+      }
+
+      misses.increment();
+      return rebuild();
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  // only answers from a fresh snapshot and never triggers a rebuild of the whole catalog
+  public Optional<Map<String, Book>> findByIsbns(Collection<String> isbns) {
+    Snapshot current = applyPendingPatches();
+
+    if (current == null || current.isExpired(timeToLiveNanos)) {
+      return Optional.empty();
+    }
+
+    hits.increment();
+    Map<String, Book> result = new HashMap<>();
+    for (String isbn : isbns) {
+      Book book = current.booksByIsbn().get(isbn);
+      if (book != null) {
+        result.put(isbn, book);
+      }
+    }
+    return Optional.of(result);
+  }
+
+  @EventListener
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public void onBookStored(BookStoredEvent event) {
+    modifications.incrementAndGet();
+    // without a snapshot the next rebuild loads the book anyway
+    if (snapshot.get() != null) {
+      pendingPatches.add(event.book());
+    }
+    patches.increment();
+  }
+
+  public void invalidate() {
+    modifications.incrementAndGet();
+    snapshot.set(null);
+    pendingPatches.clear();
+  }
+
+  // the lock keeps patches of the same book in the order they were stored
+  private Snapshot applyPendingPatches() {
+    if (pendingPatches.isEmpty()) {
+      return snapshot.get();
+    }
+
+    patchLock.lock();
+    try {
+      List<Book> stored = new ArrayList<>();
+      for (Book book = pendingPatches.poll(); book != null; book = pendingPatches.poll()) {
+        stored.add(book);
+      }
+      if (stored.isEmpty()) {
+        return snapshot.get();
+      }
+      return snapshot.updateAndGet(current -> current == null ? null : current.patch(stored));
+    } finally {
+      patchLock.unlock();
+    }
+  }
+
+  private List<Book> rebuild() {
+    long modificationsBeforeLoad = modifications.get();
+
+    List<Book> books = Collections.unmodifiableList(bookRepository.findAll());
+    rebuilds.increment();
+
+    // a book stored while loading might be missing from the result, so don't cache it then
+    if (modifications.get() == modificationsBeforeLoad) {
+      snapshot.set(Snapshot.of(books, System.nanoTime()));
+      LOG.debug("Rebuilt book catalog cache with {} books", books.size());
+    }
+
+    return books;
+  }
+
+  private static int size(AtomicReference<Snapshot> snapshot) {
+    Snapshot current = snapshot.get();
+    return current == null ? 0 : current.books().size();
+  }
+
+  private record Snapshot(List<Book> books, Map<String, Book> booksByIsbn, long loadedAtNanos) {
+
+    static Snapshot of(List<Book> books, long loadedAtNanos) {
+      Map<String, Book> booksByIsbn = new HashMap<>(books.size() * 2);
+      for (Book book : books) {
+        booksByIsbn.put(book.getIsbn(), book);
+      }
+      return new Snapshot(books, Collections.unmodifiableMap(booksByIsbn), loadedAtNanos);
+    }
+
+    boolean isExpired(long timeToLiveNanos) {
+      return System.nanoTime() - loadedAtNanos > timeToLiveNanos;
+    }
+
+    // a book stored several times is patched with its latest version, new books are appended in
+    // the order they were stored
+    Snapshot patch(List<Book> stored) {
+      Map<String, Book> updates = new LinkedHashMap<>();
+      for (Book book : stored) {
+        updates.put(book.getIsbn(), book);
+      }
+
+      List<Book> patched = new ArrayList<>(books.size() + updates.size());
+      for (Book existing : books) {
+        Book updated = updates.remove(existing.getIsbn());
+        patched.add(updated == null ? existing : updated);
+      }
+      patched.addAll(updates.values());
+
+      return Snapshot.of(Collections.unmodifiableList(patched), loadedAtNanos);
+    }
+  }
+}
@@ -1,23 +1,172 @@
 package de.rieckpil.courses.book.management;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.util.List;
+import java.util.Optional;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rieckpil.courses.book.ContentVersions;
+import de.rieckpil.courses.book.JsonResponseCache;
+import de.rieckpil.courses.book.PreSerializedJson;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
   private final BookManagementService bookManagementService;
+  private final ContentVersions contentVersions;
+  private final JsonResponseCache jsonResponseCache;
+  private final ObjectMapper objectMapper;
+  private final BookCoverStore bookCoverStore;
 
-  public BookController(BookManagementService bookManagementService) {
+  public BookController(
+      BookManagementService bookManagementService,
+      ContentVersions contentVersions,
+      JsonResponseCache jsonResponseCache,
+      ObjectMapper objectMapper,
+      BookCoverStore bookCoverStore) {
     this.bookManagementService = bookManagementService;
+    this.contentVersions = contentVersions;
+    this.jsonResponseCache = jsonResponseCache;
+    this.objectMapper = objectMapper;
+    this.bookCoverStore = bookCoverStore;
   }
 
   @GetMapping
-  public List<Book> getAvailableBooks() {
-    return bookManagementService.getAllBooks();
+  public ResponseEntity<PreSerializedJson> getAvailableBooks(WebRequest webRequest) {
+    String version = contentVersions.booksCacheVersion();
+    return jsonResponseCache.respond(
+        "books", version, bookManagementService::getAllBooks, webRequest);
+  }
+
+  @GetMapping(params = "size")
+  public ResponseEntity<PreSerializedJson> getAvailableBooks(
+      @RequestParam(name = "cursor", required = false) Long cursor,
+      @RequestParam(name = "size") Integer size,
+      WebRequest webRequest) {
+    String version = contentVersions.booksCacheVersion();
+    return jsonResponseCache.respond(
+        "books?cursor=" + cursor + "&size=" + size,
+        version,
+        () -> bookManagementService.getBooks(cursor, size),
+        webRequest);
+  }
+
+  @GetMapping(params = "isbn")
+  public List<BookLookupResult> lookupBooks(@RequestParam(name = "isbn") List<String> isbns) {
+    return bookManagementService.lookupBooks(isbns);
+  }
+
+  // for sets of ISBNs too large for the query string
+  @PostMapping("/lookup")
+  public List<BookLookupResult> lookupBooksInBody(@RequestBody List<String> isbns) {
+    return bookManagementService.lookupBooks(isbns);
+  }
+
+  @GetMapping("/search")
+  public BookSearchResult searchBooks(
+      @RequestParam(name = "q") String query,
+      @RequestParam(name = "page", defaultValue = "0") Integer page,
+      @RequestParam(name = "size", defaultValue = "20") Integer size) {
+    return bookManagementService.searchBooks(query, page, size);
+  }
+
+  @GetMapping("/suggest")
+  public List<BookSuggestion> suggestBooks(
+      @RequestParam(name = "prefix") String prefix,
+      @RequestParam(name = "limit", defaultValue = "10") Integer limit) {
+    return bookManagementService.suggestBooks(prefix, limit);
+  }
+
+  @GetMapping("/{isbn}")
+  public Book getBook(@PathVariable("isbn") String isbn) {
+    return bookManagementService.getBook(isbn);
+  }
+
+  // the cover URL carries the content hash, so a response for the current hash never changes and
+  // can be cached forever. A URL with an outdated hash is redirected to the current cover.
+  @GetMapping("/{isbn}/cover")
+  public void getCover(
+      @PathVariable("isbn") String isbn,
+      @RequestParam(name = "v", required = false) String version,
+      WebRequest webRequest,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    Optional<BookCoverStore.Cover> stored = bookCoverStore.find(isbn);
+    if (stored.isEmpty()) {
+      // covers are stored on the node that synchronized the book, the others send clients to the
+      // cover's origin
+      String coverSourceUrl = bookManagementService.getBook(isbn).getCoverSourceUrl();
+      if (coverSourceUrl == null) {
+        response.setStatus(HttpStatus.NOT_FOUND.value());
+      } else {
+        response.sendRedirect(coverSourceUrl);
+      }
+      return;
+    }
+
+    BookCoverStore.Cover cover = stored.get();
+    if (version != null && !version.equals(cover.hash())) {
+      response.sendRedirect(BookCoverStore.coverUrl(isbn, cover.hash()));
+      return;
+    }
+
+    response.setHeader(
+        HttpHeaders.CACHE_CONTROL,
+        version == null ? "no-cache" : "public, max-age=31536000, immutable");
+    if (webRequest.checkNotModified(cover.hash())) {
+      return;
+    }
+
+    response.setContentType(cover.contentType());
+    response.setContentLengthLong(cover.length());
+
+    // Tomcat's NIO connector sends the range of the segment file with sendfile once this handler
+    // returns, other containers get the bytes through the servlet output stream
+    if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+      request.setAttribute(
+          "org.apache.tomcat.sendfile.filename",
+          bookCoverStore.segmentFile(cover.segment()).toAbsolutePath().toString());
+      request.setAttribute("org.apache.tomcat.sendfile.start", cover.offset());
+      request.setAttribute("org.apache.tomcat.sendfile.end", cover.offset() + cover.length());
+      return;
+    }
+    bookCoverStore.transferTo(cover, Channels.newChannel(response.getOutputStream()));
+  }
+
+  @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void streamAvailableBooks(HttpServletResponse response) throws IOException {
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+    try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+      generator.setRootValueSeparator(null);
+      bookManagementService.streamAllBooks(
+          book -> {
+            try {
+              generator.writeObject(book);
+              generator.writeRaw('\n');
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
   }
 }
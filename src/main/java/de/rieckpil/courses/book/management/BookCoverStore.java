@@ -0,0 +1,338 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+// Cover images addressed by the SHA-256 of their content. The images are appended to segment files
+// without any framing, identical covers of different ISBNs are stored once. An append-only index
+// log maps ISBNs to their content and is replayed on startup. Index record layout:
+// [int payload length][int crc32 of payload][int isbn length][isbn][hash][int segment]
+// [long offset][int length][content type]
+@Component
+public class BookCoverStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookCoverStore.class.getName());
+
+  private static final String INDEX_FILE = "covers.idx";
+  private static final String COVER_PATH = "/api/books/%s/cover?v=%s";
+  private static final int HEADER_SIZE = Integer.BYTES * 2;
+  private static final int HASH_SIZE = 32;
+  private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+  private final boolean enabled;
+  private final Path directory;
+  private final long segmentSize;
+
+  // reads don't lock, the maps only ever point at content that is completely written
+  private final Map<String, Cover> coversByIsbn = new ConcurrentHashMap<>();
+  private final Map<String, Cover> coversByHash = new ConcurrentHashMap<>();
+  private final List<FileChannel> segments = new ArrayList<>();
+
+  private FileChannel index;
+
+  public BookCoverStore(
+      @Value("${covers.enabled:false}") boolean enabled,
+      @Value("${covers.directory:${java.io.tmpdir}/book-covers}") Path directory,
+      @Value("${covers.segment-size:64MB}") DataSize segmentSize) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.segmentSize = segmentSize.toBytes();
+  }
+
+  public static BookCoverStore disabled() {
+    return new BookCoverStore(false, null, DataSize.ofBytes(0));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // the hash is part of the URL, so a replaced cover gets a new URL and responses can be cached
+  // forever
+  public static String coverUrl(String isbn, String hash) {
+    return COVER_PATH.formatted(isbn, hash);
+  }
+
+  public static boolean isStoredCover(String thumbnailUrl) {
+    return thumbnailUrl != null && thumbnailUrl.startsWith("/api/books/");
+  }
+
+  public Optional<Cover> find(String isbn) {
+    return enabled ? Optional.ofNullable(coversByIsbn.get(isbn)) : Optional.empty();
+  }
+
+  public synchronized Cover store(String isbn, byte[] content, String contentType) {
+    if (!enabled) {
+      throw new IllegalStateException("Storing covers is disabled");
+    }
+
+    String hash = HexFormat.of().formatHex(sha256(content));
+    Cover cover = coversByHash.get(hash);
+
+    try {
+      if (cover == null) {
+        cover = append(hash, content, contentType);
+      }
+      if (!cover.equals(coversByIsbn.get(isbn))) {
+        appendIndex(isbn, cover);
+        coversByIsbn.put(isbn, cover);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to store cover for isbn '" + isbn + "'", e);
+    }
+    return cover;
+  }
+
+  // FileChannel.transferTo lets the kernel copy straight from the page cache when the target is a
+  // socket or file, other targets fall back to a buffered copy
+  public void transferTo(Cover cover, WritableByteChannel target) throws IOException {
+    FileChannel segment = segment(cover.segment());
+    long position = cover.offset();
+    long end = cover.offset() + cover.length();
+
+    while (position < end) {
+      long transferred = segment.transferTo(position, end - position, target);
+      if (transferred <= 0) {
+        throw new EOFException("Cover " + cover.hash() + " is truncated");
+      }
+      position += transferred;
+    }
+  }
+
+  public Path segmentFile(int segment) {
+    return directory.resolve(segmentName(segment));
+  }
+
+  int size() {
+    return coversByIsbn.size();
+  }
+
+  @PreDestroy
+  public synchronized void close() throws IOException {
+    if (index != null) {
+      index.close();
+      index = null;
+    }
+    for (FileChannel segment : segments) {
+      segment.close();
+    }
+    segments.clear();
+  }
+
+  @PostConstruct
+  void open() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      for (int segment = 0; Files.exists(segmentFile(segment)); segment++) {
+        segments.add(openSegment(segment));
+      }
+      index =
+          FileChannel.open(
+              directory.resolve(INDEX_FILE),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      load();
+      LOG.info(
+          "Loaded {} book covers with {} distinct images from {}",
+          coversByIsbn.size(),
+          coversByHash.size(),
+          directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open book cover store", e);
+    }
+  }
+
+  private void load() throws IOException {
+    long offset = 0;
+
+    DataInputStream input =
+        new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(index.position(0)), 64 * 1024));
+
+    while (true) {
+      byte[] payload;
+      try {
+        int length = input.readInt();
+        int checksum = input.readInt();
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+          break;
+        }
+        payload = new byte[length];
+        input.readFully(payload);
+        if (checksum(payload) != checksum) {
+          break;
+        }
+      } catch (EOFException e) {
+        break;
+      }
+
+      IndexRecord record = IndexRecord.decode(payload);
+      Cover cover = record.cover();
+      // the index is written after the content, a record never points past the end of its segment
+      // unless the segment file was tampered with
+      if (cover.segment() < segments.size()
+          && cover.offset() + cover.length() <= segments.get(cover.segment()).size()) {
+        coversByIsbn.put(record.isbn(), cover);
+        coversByHash.putIfAbsent(cover.hash(), cover);
+      }
+      offset += HEADER_SIZE + payload.length;
+    }
+
+    if (offset < index.size()) {
+      LOG.warn("Truncating corrupt book cover index at offset {}", offset);
+      index.truncate(offset);
+    }
+    index.position(offset);
+  }
+
+  // content of a crashed write without an index record is never referenced and stays as garbage
+  private Cover append(String hash, byte[] content, String contentType) throws IOException {
+    if (segments.isEmpty()
+        || segments.get(segments.size() - 1).size() + content.length > segmentSize) {
+      segments.add(openSegment(segments.size()));
+    }
+
+    int segment = segments.size() - 1;
+    FileChannel channel = segments.get(segment);
+    long offset = channel.size();
+
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, offset + buffer.position());
+    }
+    // the content must be on disk before an index record can point to it, otherwise a crash may
+    // leave a record pointing to a hole of zeros that passes the size check on startup
+    channel.force(false);
+
+    Cover cover = new Cover(hash, contentType, segment, offset, content.length);
+    coversByHash.put(hash, cover);
+    return cover;
+  }
+
+  private void appendIndex(String isbn, Cover cover) throws IOException {
+    byte[] payload = new IndexRecord(isbn, cover).encode();
+
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    buffer.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+
+    long offset = index.size();
+    while (buffer.hasRemaining()) {
+      index.write(buffer, offset + buffer.position());
+    }
+    index.force(false);
+  }
+
+  private FileChannel segment(int segment) throws IOException {
+    synchronized (this) {
+      if (segment < segments.size()) {
+        return segments.get(segment);
+      }
+    }
+    throw new IOException("Unknown cover segment " + segment);
+  }
+
+  private FileChannel openSegment(int segment) throws IOException {
+    return FileChannel.open(
+        segmentFile(segment),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  private static String segmentName(int segment) {
+    return "covers-%05d.seg".formatted(segment);
+  }
+
+  private static byte[] sha256(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static int checksum(byte[] payload) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(payload);
+    return (int) crc32.getValue();
+  }
+
+  public record Cover(String hash, String contentType, int segment, long offset, int length) {}
+
+  private record IndexRecord(String isbn, Cover cover) {
+
+    byte[] encode() {
+      byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+      byte[] contentTypeBytes = cover.contentType().getBytes(StandardCharsets.UTF_8);
+      return ByteBuffer.allocate(
+              Integer.BYTES
+                  + isbnBytes.length
+                  + HASH_SIZE
+                  + Integer.BYTES
+                  + Long.BYTES
+                  + Integer.BYTES
+                  + contentTypeBytes.length)
+          .putInt(isbnBytes.length)
+          .put(isbnBytes)
+          .put(HexFormat.of().parseHex(cover.hash()))
+          .putInt(cover.segment())
+          .putLong(cover.offset())
+          .putInt(cover.length())
+          .put(contentTypeBytes)
+          .array();
+    }
+
+    static IndexRecord decode(byte[] payload) {
+      ByteBuffer buffer = ByteBuffer.wrap(payload);
+      byte[] isbnBytes = new byte[buffer.getInt()];
+      buffer.get(isbnBytes);
+      byte[] hash = new byte[HASH_SIZE];
+      buffer.get(hash);
+      int segment = buffer.getInt();
+      long offset = buffer.getLong();
+      int length = buffer.getInt();
+      byte[] contentTypeBytes = new byte[buffer.remaining()];
+      buffer.get(contentTypeBytes);
+      return new IndexRecord(
+          new String(isbnBytes, StandardCharsets.UTF_8),
+          new Cover(
+              HexFormat.of().formatHex(hash),
+              new String(contentTypeBytes, StandardCharsets.UTF_8),
+              segment,
+              offset,
+              length));
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package de.rieckpil.courses.book.management;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+// downloads the Open Library cover of every stored book into the cover store and points the
+// thumbnail at it. Runs detached from the synchronization, a missing cover never fails it and the
+// upstream URL is kept until the download succeeds. Downloads are queued, so a bulk import doesn't
+// open a connection per book.
+@Component
+@ConditionalOnProperty(prefix = "covers", name = "enabled", havingValue = "true")
+public class BookCoverSynchronizer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookCoverSynchronizer.class.getName());
+
+  // served from our own origin, so only image formats browsers never treat as documents or scripts
+  private static final Set<MediaType> COVER_TYPES =
+      Set.of(
+          MediaType.IMAGE_JPEG,
+          MediaType.IMAGE_PNG,
+          MediaType.IMAGE_GIF,
+          MediaType.valueOf("image/webp"));
+
+  private final WebClient coverWebClient;
+  private final BookCoverStore coverStore;
+  private final BookRepository bookRepository;
+  private final TransactionOperations transactionOperations;
+  private final ApplicationEventPublisher applicationEventPublisher;
+  private final Scheduler blockingScheduler;
+  private final int maxConcurrentDownloads;
+
+  private final Sinks.Many<CoverDownload> downloads = Sinks.many().unicast().onBackpressureBuffer();
+  private Disposable subscription;
+
+  public BookCoverSynchronizer(
+      @Qualifier("openLibraryCoverWebClient") WebClient coverWebClient,
+      BookCoverStore coverStore,
+      BookRepository bookRepository,
+      TransactionOperations transactionOperations,
+      ApplicationEventPublisher applicationEventPublisher,
+      Scheduler blockingScheduler,
+      @Value("${covers.max-concurrent-downloads:4}") int maxConcurrentDownloads) {
+    this.coverWebClient = coverWebClient;
+    this.coverStore = coverStore;
+    this.bookRepository = bookRepository;
+    this.transactionOperations = transactionOperations;
+    this.applicationEventPublisher = applicationEventPublisher;
+    this.blockingScheduler = blockingScheduler;
+    this.maxConcurrentDownloads = maxConcurrentDownloads;
+  }
+
+  @PostConstruct
+  void start() {
+    this.subscription =
+        downloads
+            .asFlux()
+            .flatMap(
+                download ->
+                    synchronizeCover(download.isbn(), download.thumbnailUrl())
+                        .doOnNext(
+                            stored ->
+                                LOG.debug("Stored cover of book with isbn '{}'", stored.getIsbn()))
+                        .onErrorResume(
+                            e -> {
+                              LOG.warn(
+                                  "Unable to store cover of book with isbn '{}'",
+                                  download.isbn(),
+                                  e);
+                              return Mono.empty();
+                            }),
+                maxConcurrentDownloads)
+            .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    downloads.tryEmitComplete();
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  @EventListener
+  public void onBookStored(BookStoredEvent event) {
+    Book book = event.book();
+    String thumbnailUrl = book.getThumbnailUrl();
+
+    if (thumbnailUrl == null || BookCoverStore.isStoredCover(thumbnailUrl)) {
+      return;
+    }
+
+    // events are published from several threads, the sink only accepts one emission at a time
+    downloads.emitNext(
+        new CoverDownload(book.getIsbn(), thumbnailUrl),
+        Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+  }
+
+  Mono<Book> synchronizeCover(String isbn, String thumbnailUrl) {
+    return coverWebClient
+        .get()
+        .uri(URI.create(thumbnailUrl))
+        .retrieve()
+        .toEntity(byte[].class)
+        // don't block the HTTP client's event loop with file and JDBC access
+        .publishOn(blockingScheduler)
+        .mapNotNull(response -> storeCover(isbn, thumbnailUrl, response));
+  }
+
+  private Book storeCover(String isbn, String thumbnailUrl, ResponseEntity<byte[]> response) {
+    byte[] content = response.getBody();
+    if (content == null || content.length == 0) {
+      return null;
+    }
+
+    MediaType contentType = coverType(response.getHeaders().getContentType());
+    if (contentType == null) {
+      throw new IllegalStateException(
+          "Unsupported cover content type '" + response.getHeaders().getContentType() + "'");
+    }
+
+    BookCoverStore.Cover cover = coverStore.store(isbn, content, contentType.toString());
+    String coverUrl = BookCoverStore.coverUrl(isbn, cover.hash());
+
+    // loaded within the transaction, so only the thumbnail column is updated on commit
+    Book book =
+        transactionOperations.execute(
+            status -> {
+              Book stored = bookRepository.findByIsbn(isbn);
+              if (stored != null) {
+                stored.setThumbnailUrl(coverUrl);
+                stored.setCoverSourceUrl(thumbnailUrl);
+              }
+              return stored;
+            });
+
+    if (book != null) {
+      applicationEventPublisher.publishEvent(new BookStoredEvent(book));
+    }
+    return book;
+  }
+
+  private record CoverDownload(String isbn, String thumbnailUrl) {}
+
+  // drops parameters such as a charset, they have no meaning for images
+  private static MediaType coverType(MediaType contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    MediaType type = new MediaType(contentType.getType(), contentType.getSubtype());
+    return COVER_TYPES.contains(type) ? type : null;
+  }
+}
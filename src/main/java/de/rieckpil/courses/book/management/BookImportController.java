@@ -0,0 +1,30 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/books/imports")
+public class BookImportController {
+
+  private final BookImporter bookImporter;
+
+  public BookImportController(BookImporter bookImporter) {
+    this.bookImporter = bookImporter;
+  }
+
+  // the body is consumed while it's uploaded, it's never buffered as a whole
+  @PostMapping(consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+  @PreAuthorize("hasAuthority('ROLE_moderator')")
+  public BookImportResult importBooks(InputStream body) throws IOException {
+    return bookImporter.importIsbns(new InputStreamReader(body, StandardCharsets.UTF_8));
+  }
+}
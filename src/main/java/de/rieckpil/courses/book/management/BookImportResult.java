@@ -0,0 +1,9 @@
+package de.rieckpil.courses.book.management;
+
+public record BookImportResult(
+    long received,
+    long invalid,
+    long duplicates,
+    long alreadyPresent,
+    long enqueued,
+    long failed) {}
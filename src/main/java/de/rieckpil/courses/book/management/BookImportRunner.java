@@ -0,0 +1,34 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// imports an ISBN file on startup, e.g. java -jar app.jar --catalog.import.file=isbns.csv
+@Component
+@ConditionalOnProperty(prefix = "catalog.import", name = "file")
+public class BookImportRunner implements ApplicationRunner {
+
+  private final BookImporter bookImporter;
+  private final Path file;
+
+  public BookImportRunner(BookImporter bookImporter, @Value("${catalog.import.file}") Path file) {
+    this.bookImporter = bookImporter;
+    this.file = file;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      bookImporter.importIsbns(reader);
+    }
+  }
+}
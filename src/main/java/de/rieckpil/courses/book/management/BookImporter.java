@@ -0,0 +1,187 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import io.awspring.cloud.sqs.operations.SqsAsyncOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+// Feeds large ISBN lists into the book synchronization queue. The input is read as a stream of
+// comma or whitespace separated ISBNs, so CSV files and newline-delimited lists both work. ISBNs
+// are checked against the database in chunks and sent in SQS batches, several batches are in
+// flight at once.
+@Service
+public class BookImporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookImporter.class.getName());
+
+  // the maximum number of entries of an SQS SendMessageBatch request
+  static final int SEND_BATCH_SIZE = 10;
+  static final int LOOKUP_CHUNK_SIZE = 500;
+
+  private static final Pattern SEPARATOR = Pattern.compile("[,;\\s]+");
+  private static final Pattern ISBN_13 = Pattern.compile("\\d{13}");
+
+  private final BookRepository bookRepository;
+  private final SqsAsyncOperations sqsOperations;
+  private final String bookSynchronizationQueueName;
+  private final int maxInFlightBatches;
+
+  public BookImporter(
+      BookRepository bookRepository,
+      SqsAsyncOperations sqsOperations,
+      @Value("${sqs.book-synchronization-queue}") String bookSynchronizationQueueName,
+      @Value("${catalog.import.max-in-flight-batches:8}") int maxInFlightBatches) {
+    this.bookRepository = bookRepository;
+    this.sqsOperations = sqsOperations;
+    this.bookSynchronizationQueueName = bookSynchronizationQueueName;
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+
+  // returns once every batch was either sent or failed
+  public BookImportResult importIsbns(Reader input) throws IOException {
+    Import run = new Import();
+    BufferedReader reader = new BufferedReader(input);
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      for (String token : SEPARATOR.split(line)) {
+        run.accept(token);
+      }
+    }
+    run.finish();
+
+    BookImportResult result = run.result();
+    LOG.info("Imported ISBNs: {}", result);
+    return result;
+  }
+
+  static String normalize(String token) {
+    String isbn = token.replace("\"", "").replace("-", "");
+    if (!ISBN_13.matcher(isbn).matches()) {
+      return null;
+    }
+    int sum = 0;
+    for (int i = 0; i < isbn.length(); i++) {
+      int digit = isbn.charAt(i) - '0';
+      sum += i % 2 == 0 ? digit : digit * 3;
+    }
+    return sum % 10 == 0 ? isbn : null;
+  }
+
+  // the state of a single import, the send callbacks update the counters from SQS client threads
+  private class Import {
+
+    private final Set<String> seen = new HashSet<>();
+    private final List<String> pending = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+    private final Semaphore inFlightBatches = new Semaphore(maxInFlightBatches);
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private long received;
+    private long invalid;
+    private long duplicates;
+    private long alreadyPresent;
+
+    void accept(String token) {
+      // blank tokens of leading separators and a CSV header aren't ISBNs anyone sent
+      if (token.isEmpty() || token.replace("\"", "").equalsIgnoreCase("isbn")) {
+        return;
+      }
+      received++;
+
+      String isbn = normalize(token);
+      if (isbn == null) {
+        invalid++;
+      } else if (!seen.add(isbn)) {
+        duplicates++;
+      } else {
+        pending.add(isbn);
+        if (pending.size() == LOOKUP_CHUNK_SIZE) {
+          enqueuePending();
+        }
+      }
+    }
+
+    void finish() {
+      enqueuePending();
+      acquire(maxInFlightBatches);
+    }
+
+    BookImportResult result() {
+      return new BookImportResult(
+          received, invalid, duplicates, alreadyPresent, enqueued.sum(), failed.sum());
+    }
+
+    private void enqueuePending() {
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      Set<String> existing = new HashSet<>(bookRepository.findExistingIsbns(pending));
+      alreadyPresent += existing.size();
+
+      List<Message<BookSynchronization>> batch = new ArrayList<>(SEND_BATCH_SIZE);
+      for (String isbn : pending) {
+        if (existing.contains(isbn)) {
+          continue;
+        }
+        batch.add(MessageBuilder.withPayload(new BookSynchronization(isbn)).build());
+        if (batch.size() == SEND_BATCH_SIZE) {
+          send(batch);
+          batch = new ArrayList<>(SEND_BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty()) {
+        send(batch);
+      }
+      pending.clear();
+    }
+
+    // waits while the maximum number of batches is in flight, so the reader never runs far ahead
+    // of SQS
+    private void send(List<Message<BookSynchronization>> batch) {
+      acquire(1);
+      try {
+        sqsOperations
+            .sendManyAsync(bookSynchronizationQueueName, batch)
+            .whenComplete(
+                (result, error) -> {
+                  if (error != null) {
+                    LOG.warn("Unable to enqueue a batch of {} ISBNs", batch.size(), error);
+                    failed.add(batch.size());
+                  } else {
+                    enqueued.add(result.successful().size());
+                    failed.add(result.failed().size());
+                  }
+                  inFlightBatches.release();
+                });
+      } catch (RuntimeException e) {
+        inFlightBatches.release();
+        throw e;
+      }
+    }
+
+    private void acquire(int permits) {
+      try {
+        inFlightBatches.acquire(permits);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while enqueueing ISBNs", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package de.rieckpil.courses.book.management;
+
+public record BookLookupResult(String isbn, boolean found, Book book) {
+
+  static BookLookupResult of(String isbn, Book book) {
+    return new BookLookupResult(isbn, book != null, book);
+  }
+}
@@ -1,19 +1,111 @@
 package de.rieckpil.courses.book.management;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class BookManagementService {
 
+  static final int MAX_PAGE_SIZE = 500;
+  static final int MAX_SEARCH_PAGE_SIZE = 100;
+  static final int MAX_LOOKUP_SIZE = 1000;
+  static final int MAX_SUGGESTIONS = BookSuggestionIndex.MAX_SUGGESTIONS;
+
   private final BookRepository bookRepository;
+  private final BookCatalogCache bookCatalogCache;
+  private final BookSearch bookSearch;
+  private final BookSuggestionIndex bookSuggestionIndex;
+  private final EntityManager entityManager;
 
-  public BookManagementService(BookRepository bookRepository) {
+  public BookManagementService(
+      BookRepository bookRepository,
+      BookCatalogCache bookCatalogCache,
+      BookSearch bookSearch,
+      BookSuggestionIndex bookSuggestionIndex,
+      EntityManager entityManager) {
     this.bookRepository = bookRepository;
+    this.bookCatalogCache = bookCatalogCache;
+    this.bookSearch = bookSearch;
+    this.bookSuggestionIndex = bookSuggestionIndex;
+    this.entityManager = entityManager;
   }
 
   public List<Book> getAllBooks() {
-    return bookRepository.findAll();
+    return bookCatalogCache.getAllBooks();
+  }
+
+  public BookPage getBooks(Long cursor, int size) {
+    int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+    // fetch one additional row to know if there is a next page without an extra count query
+    List<BookSummary> books =
+        bookRepository.findSummariesByIdGreaterThan(
+            cursor == null ? 0L : cursor, PageRequest.of(0, pageSize + 1));
+
+    if (books.size() <= pageSize) {
+      return new BookPage(books, null);
+    }
+
+    List<BookSummary> page = books.subList(0, pageSize);
+    return new BookPage(List.copyOf(page), page.get(pageSize - 1).id());
+  }
+
+  public Book getBook(String isbn) {
+    Book book = bookRepository.findByIsbn(isbn);
+    if (book == null) {
+      throw new BookNotFoundException();
+    }
+    return book;
+  }
+
+  public List<BookLookupResult> lookupBooks(List<String> isbns) {
+    if (isbns.size() > MAX_LOOKUP_SIZE) {
+      throw new TooManyIsbnsException();
+    }
+
+    Set<String> distinctIsbns = new LinkedHashSet<>(isbns);
+
+    // a single IN query for all ISBNs unless the catalog is already in memory
+    Map<String, Book> books =
+        bookCatalogCache
+            .findByIsbns(distinctIsbns)
+            .orElseGet(
+                () ->
+                    bookRepository.findByIsbnIn(distinctIsbns).stream()
+                        .collect(Collectors.toMap(Book::getIsbn, Function.identity())));
+
+    return isbns.stream().map(isbn -> BookLookupResult.of(isbn, books.get(isbn))).toList();
+  }
+
+  public BookSearchResult searchBooks(String query, int page, int size) {
+    return bookSearch.search(
+        query, Math.max(0, page), Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE)));
+  }
+
+  public List<BookSuggestion> suggestBooks(String prefix, int limit) {
+    return bookSuggestionIndex.suggest(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+  }
+
+  @Transactional(readOnly = true)
+  public void streamAllBooks(Consumer<Book> consumer) {
+    try (Stream<Book> books = bookRepository.streamAllByOrderByIdAsc()) {
+      books.forEach(
+          book -> {
+            consumer.accept(book);
+            // keep the persistence context from growing with the size of the catalog
+            entityManager.detach(book);
+          });
+    }
   }
 }
@@ -0,0 +1,12 @@
+package de.rieckpil.courses.book.management;
+
+import reactor.core.publisher.Mono;
+
+// a source of book metadata for a single ISBN. The returned Mono fails when the source doesn't know
+// the book, so callers can tell an unknown ISBN from an empty result.
+public interface BookMetadataProvider {
+
+  String name();
+
+  Mono<Book> fetchMetadataForBookAsync(String isbn);
+}
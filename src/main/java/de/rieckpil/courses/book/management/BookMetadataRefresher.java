@@ -0,0 +1,223 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+// walks the catalog by id and re-fetches books not synchronized within max-age. Each run refreshes
+// at most books-per-run books, so a full-catalog refresh is spread over many runs instead of
+// hitting Open Library and the database at once.
+@Component
+@ConditionalOnProperty(prefix = "catalog.refresh", name = "enabled", havingValue = "true")
+public class BookMetadataRefresher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookMetadataRefresher.class.getName());
+
+  private final BookRepository bookRepository;
+  private final OpenLibraryApiClient openLibraryApiClient;
+  private final ApplicationEventPublisher applicationEventPublisher;
+  private final TransactionOperations transactionOperations;
+  private final Duration maxAge;
+  private final int batchSize;
+  private final int booksPerRun;
+  private final Clock clock;
+
+  // the id the next run continues after, only touched by the scheduler thread
+  private long cursor;
+
+  @Autowired
+  public BookMetadataRefresher(
+      BookRepository bookRepository,
+      OpenLibraryApiClient openLibraryApiClient,
+      ApplicationEventPublisher applicationEventPublisher,
+      TransactionOperations transactionOperations,
+      @Value("${catalog.refresh.max-age:P7D}") Duration maxAge,
+      @Value("${catalog.refresh.batch-size:20}") int batchSize,
+      @Value("${catalog.refresh.books-per-run:100}") int booksPerRun) {
+    this(
+        bookRepository,
+        openLibraryApiClient,
+        applicationEventPublisher,
+        transactionOperations,
+        maxAge,
+        batchSize,
+        booksPerRun,
+        Clock.systemUTC());
+  }
+
+  BookMetadataRefresher(
+      BookRepository bookRepository,
+      OpenLibraryApiClient openLibraryApiClient,
+      ApplicationEventPublisher applicationEventPublisher,
+      TransactionOperations transactionOperations,
+      Duration maxAge,
+      int batchSize,
+      int booksPerRun,
+      Clock clock) {
+    this.bookRepository = bookRepository;
+    this.openLibraryApiClient = openLibraryApiClient;
+    this.applicationEventPublisher = applicationEventPublisher;
+    this.transactionOperations = transactionOperations;
+    this.maxAge = maxAge;
+    this.batchSize = batchSize;
+    this.booksPerRun = booksPerRun;
+    this.clock = clock;
+  }
+
+  @Scheduled(
+      fixedDelayString = "${catalog.refresh.interval:PT1M}",
+      initialDelayString = "${catalog.refresh.interval:PT1M}")
+  public void refreshStaleBooks() {
+    Instant staleBefore = clock.instant().minus(maxAge);
+    int refreshed = 0;
+
+    while (refreshed < booksPerRun) {
+      List<Book> staleBooks =
+          bookRepository.findStaleBooks(
+              cursor, staleBefore, Math.min(batchSize, booksPerRun - refreshed));
+
+      if (staleBooks.isEmpty()) {
+        // reached the end of the catalog, the next run starts over
+        cursor = 0;
+        break;
+      }
+
+      try {
+        refresh(staleBooks);
+      } catch (RuntimeException e) {
+        // the cursor stays, the next run retries the same books
+        LOG.warn("Unable to refresh book metadata, retrying with the next run", e);
+        break;
+      }
+
+      cursor = staleBooks.get(staleBooks.size() - 1).getId();
+      refreshed += staleBooks.size();
+    }
+
+    if (refreshed > 0) {
+      LOG.info("Refreshed metadata of {} books", refreshed);
+    }
+  }
+
+  private void refresh(List<Book> staleBooks) {
+    // no transaction and thus no connection is held while waiting for Open Library
+    List<Book> fetchedBooks = new ArrayList<>();
+
+    List<String> unvalidatedIsbns = new ArrayList<>();
+
+    // books with validators are revalidated one by one, mostly a 304 without a body. Books without
+    // validators share a single multi-ISBN request, whose response carries no per-book validators.
+    for (Book book : staleBooks) {
+      if (hasValidators(book)) {
+        openLibraryApiClient.revalidateMetadataForBook(book).ifPresent(fetchedBooks::add);
+      } else {
+        unvalidatedIsbns.add(book.getIsbn());
+      }
+    }
+    if (!unvalidatedIsbns.isEmpty()) {
+      fetchedBooks.addAll(openLibraryApiClient.refreshMetadataForBooks(unvalidatedIsbns).values());
+    }
+
+    Map<String, Book> staleBooksByIsbn =
+        staleBooks.stream().collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+    List<Book> modifiedBooks = new ArrayList<>();
+    List<Book> changedBooks = new ArrayList<>();
+
+    for (Book fetched : fetchedBooks) {
+      Book book = staleBooksByIsbn.get(fetched.getIsbn());
+      if (book == null) {
+        continue;
+      }
+      boolean metadataChanged = applyMetadata(book, fetched);
+      boolean validatorsChanged = applyValidators(book, fetched);
+
+      if (metadataChanged || validatorsChanged) {
+        modifiedBooks.add(book);
+      }
+      if (metadataChanged) {
+        changedBooks.add(book);
+      }
+    }
+
+    // ISBNs unknown to Open Library are marked as well, so they aren't fetched on every run
+    List<Long> ids = staleBooks.stream().map(Book::getId).toList();
+    transactionOperations.executeWithoutResult(
+        status -> {
+          bookRepository.saveAll(modifiedBooks);
+          bookRepository.markSynced(ids, clock.instant());
+        });
+
+    for (Book book : changedBooks) {
+      applicationEventPublisher.publishEvent(new BookStoredEvent(book));
+    }
+  }
+
+  // the stored book is detached, merging it only updates the columns that differ
+  private boolean applyMetadata(Book book, Book fetched) {
+    boolean changed =
+        !Objects.equals(book.getTitle(), fetched.getTitle())
+            || !Objects.equals(book.getAuthor(), fetched.getAuthor())
+            || !Objects.equals(book.getGenre(), fetched.getGenre())
+            || thumbnailChanged(book, fetched)
+            || !Objects.equals(book.getDescription(), fetched.getDescription())
+            || !Objects.equals(book.getPublisher(), fetched.getPublisher())
+            || !Objects.equals(book.getPages(), fetched.getPages());
+
+    if (changed) {
+      book.setTitle(fetched.getTitle());
+      book.setAuthor(fetched.getAuthor());
+      book.setGenre(fetched.getGenre());
+      if (thumbnailChanged(book, fetched)) {
+        book.setThumbnailUrl(fetched.getThumbnailUrl());
+      }
+      book.setDescription(fetched.getDescription());
+      book.setPublisher(fetched.getPublisher());
+      book.setPages(fetched.getPages());
+    }
+    return changed;
+  }
+
+  // a downloaded cover is compared by the upstream URL it was fetched from. A new upstream URL
+  // replaces it, which makes the cover synchronizer download the new cover.
+  private static boolean thumbnailChanged(Book book, Book fetched) {
+    String upstreamUrl =
+        BookCoverStore.isStoredCover(book.getThumbnailUrl())
+            ? book.getCoverSourceUrl()
+            : book.getThumbnailUrl();
+    return !Objects.equals(upstreamUrl, fetched.getThumbnailUrl());
+  }
+
+  private static boolean hasValidators(Book book) {
+    return book.getMetadataEtag() != null || book.getMetadataLastModified() != null;
+  }
+
+  // a response without validators doesn't remove the stored ones
+  private boolean applyValidators(Book book, Book fetched) {
+    if (!hasValidators(fetched)) {
+      return false;
+    }
+    boolean changed =
+        !Objects.equals(book.getMetadataEtag(), fetched.getMetadataEtag())
+            || !Objects.equals(book.getMetadataLastModified(), fetched.getMetadataLastModified());
+
+    book.setMetadataEtag(fetched.getMetadataEtag());
+    book.setMetadataLastModified(fetched.getMetadataLastModified());
+    return changed;
+  }
+}
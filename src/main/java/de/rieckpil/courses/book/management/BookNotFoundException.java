@@ -0,0 +1,14 @@
+package de.rieckpil.courses.book.management;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class BookNotFoundException extends RuntimeException {
+
+  public BookNotFoundException() {}
+
+  public BookNotFoundException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,5 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+public record BookPage(List<BookSummary> books, Long next) {}
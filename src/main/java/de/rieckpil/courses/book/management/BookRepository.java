@@ -1,7 +1,66 @@
 package de.rieckpil.courses.book.management;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+  List<Book> findByIsbnIn(Collection<String> isbns);
+
+  // only the ISBNs, no entities are loaded into the persistence context
+  @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+  List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+  // constructor expressions aren't managed by the persistence context and skip the description
+  @Query(
+      "SELECT new de.rieckpil.courses.book.management.BookSummary("
+          + "b.id, b.isbn, b.title, b.author, b.genre, b.thumbnailUrl, b.publisher, b.pages) "
+          + "FROM Book b WHERE b.id > :id ORDER BY b.id ASC")
+  List<BookSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+  // the fetch size makes the PostgreSQL driver use a server-side cursor instead of loading all rows
+  @QueryHints({
+    @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+    @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<Book> streamAllByOrderByIdAsc();
+
+  @Query(
+      value =
+          "SELECT books.* "
+              + "FROM books, websearch_to_tsquery('english', :query) AS query "
+              + "WHERE search_vector @@ query "
+              + "ORDER BY ts_rank(search_vector, query) DESC, id "
+              + "LIMIT :limit OFFSET :offset",
+      nativeQuery = true)
+  List<Book> searchByFullText(
+      @Param("query") String query, @Param("limit") int limit, @Param("offset") long offset);
+
+  @Query(
+      value =
+          "SELECT COUNT(*) FROM books WHERE search_vector @@ websearch_to_tsquery('english', :query)",
+      nativeQuery = true)
+  long countByFullText(@Param("query") String query);
 
-public interface BookRepository extends JpaRepository<Book, Long> {
-  Book findByIsbn(String isbn);
+  // keyset pagination over books whose metadata wasn't synchronized since the given instant
+  @Query(
+      value =
+          "SELECT * FROM books "
+              + "WHERE id > :id AND last_synced_at < :staleBefore "
+              + "ORDER BY id LIMIT :limit",
+      nativeQuery = true)
+  List<Book> findStaleBooks(
+      @Param("id") long afterId,
+      @Param("staleBefore") Instant staleBefore,
+      @Param("limit") int limit);
 }
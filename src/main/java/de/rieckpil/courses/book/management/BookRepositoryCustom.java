@@ -0,0 +1,17 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface BookRepositoryCustom {
+  Book findByIsbn(String isbn);
+
+  // assigns the id and returns true, or returns false when the isbn is already stored
+  boolean insertIfAbsent(Book book);
+
+  // returns the inserted books, ISBNs that are already stored are skipped
+  List<Book> insertAllIfAbsent(Collection<Book> books);
+
+  void markSynced(Collection<Long> ids, Instant syncedAt);
+}
@@ -0,0 +1,130 @@
+package de.rieckpil.courses.book.management;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+  private static final String INSERT_BOOKS =
+      "INSERT INTO books (title, isbn, author, genre, thumbnail_url, description, publisher, pages, "
+          + "metadata_etag, metadata_last_modified) VALUES ";
+
+  private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  // the unique isbn makes duplicate deliveries a no-op instead of a constraint violation
+  private static final String SKIP_EXISTING = " ON CONFLICT (isbn) DO NOTHING RETURNING id, isbn";
+
+  private final EntityManager entityManager;
+
+  public BookRepositoryCustomImpl(EntityManager entityManager) {
+    this.entityManager = entityManager;
+  }
+
+  // resolved through the natural-id and entity cache regions before hitting the database
+  @Override
+  @Transactional(readOnly = true)
+  public Book findByIsbn(String isbn) {
+    return entityManager.unwrap(Session.class).bySimpleNaturalId(Book.class).load(isbn);
+  }
+
+  @Override
+  @Transactional
+  public boolean insertIfAbsent(Book book) {
+    return !insertAllIfAbsent(List.of(book)).isEmpty();
+  }
+
+  // a single multi-row statement, IDENTITY ids rule out JDBC batching of persist calls
+  @Override
+  @Transactional
+  public List<Book> insertAllIfAbsent(Collection<Book> books) {
+    if (books.isEmpty()) {
+      return List.of();
+    }
+
+    Map<String, Book> booksByIsbn = new LinkedHashMap<>();
+    for (Book book : books) {
+      booksByIsbn.putIfAbsent(book.getIsbn(), book);
+    }
+
+    String sql =
+        INSERT_BOOKS
+            + String.join(", ", Collections.nCopies(booksByIsbn.size(), ROW))
+            + SKIP_EXISTING;
+
+    return entityManager
+        .unwrap(Session.class)
+        .doReturningWork(
+            connection -> {
+              try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (Book book : booksByIsbn.values()) {
+                  index = bind(statement, index, book);
+                }
+
+                List<Book> inserted = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                  while (resultSet.next()) {
+                    Book book = booksByIsbn.get(resultSet.getString("isbn"));
+                    book.setId(resultSet.getLong("id"));
+                    inserted.add(book);
+                  }
+                }
+                return inserted;
+              }
+            });
+  }
+
+  // plain JDBC, last_synced_at isn't mapped and a native bulk update through Hibernate would
+  // evict every cached book
+  @Override
+  @Transactional
+  public void markSynced(Collection<Long> ids, Instant syncedAt) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    entityManager
+        .unwrap(Session.class)
+        .doWork(
+            connection -> {
+              try (PreparedStatement statement =
+                  connection.prepareStatement(
+                      "UPDATE books SET last_synced_at = ? WHERE id = ANY (?)")) {
+                statement.setTimestamp(1, Timestamp.from(syncedAt));
+                statement.setArray(2, connection.createArrayOf("bigint", ids.toArray()));
+                statement.executeUpdate();
+              }
+            });
+  }
+
+  private int bind(PreparedStatement statement, int index, Book book) throws SQLException {
+    statement.setString(index++, book.getTitle());
+    statement.setString(index++, book.getIsbn());
+    statement.setString(index++, book.getAuthor());
+    statement.setString(index++, book.getGenre());
+    statement.setString(index++, book.getThumbnailUrl());
+    statement.setString(index++, book.getDescription());
+    statement.setString(index++, book.getPublisher());
+    if (book.getPages() == null) {
+      statement.setNull(index++, Types.BIGINT);
+    } else {
+      statement.setLong(index++, book.getPages());
+    }
+    statement.setString(index++, book.getMetadataEtag());
+    statement.setString(index++, book.getMetadataLastModified());
+    return index;
+  }
+}
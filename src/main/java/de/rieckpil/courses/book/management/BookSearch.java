@@ -0,0 +1,5 @@
+package de.rieckpil.courses.book.management;
+
+public interface BookSearch {
+  BookSearchResult search(String query, int page, int size);
+}
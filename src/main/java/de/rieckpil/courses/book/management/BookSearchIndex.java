@@ -0,0 +1,195 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+@ConditionalOnProperty(
+    prefix = "catalog.search",
+    name = "mode",
+    havingValue = "in-memory",
+    matchIfMissing = true)
+public class BookSearchIndex implements BookSearch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookSearchIndex.class.getName());
+
+  private static final float TITLE_WEIGHT = 3.0f;
+  private static final float AUTHOR_WEIGHT = 2.0f;
+  private static final float GENRE_WEIGHT = 1.5f;
+  private static final float PUBLISHER_WEIGHT = 1.0f;
+  private static final float DESCRIPTION_WEIGHT = 0.5f;
+
+  // match nearly every description and only bloat the postings and the scoring of a query
+  private static final Set<String> STOPWORDS =
+      Set.of(
+          "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "in", "into",
+          "is", "it", "its", "of", "on", "or", "that", "the", "their", "this", "to", "was", "were",
+          "which", "will", "with");
+
+  // highest score first, the isbn keeps the order of equal scores stable across pages
+  private static final Comparator<Map.Entry<String, Float>> RANKING =
+      Map.Entry.<String, Float>comparingByValue(Comparator.reverseOrder())
+          .thenComparing(Map.Entry.comparingByKey());
+
+  private final BookRepository bookRepository;
+  private final EntityManager entityManager;
+
+  // token -> (isbn -> weighted term frequency)
+  private final Map<String, Map<String, Float>> postings = new ConcurrentHashMap<>();
+  private final Map<String, Book> documents = new ConcurrentHashMap<>();
+
+  public BookSearchIndex(BookRepository bookRepository, EntityManager entityManager) {
+    this.bookRepository = bookRepository;
+    this.entityManager = entityManager;
+  }
+
+  @Transactional(readOnly = true)
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    try (Stream<Book> books = bookRepository.streamAllByOrderByIdAsc()) {
+      books.forEach(
+          book -> {
+            // the index keeps the book, the persistence context must not keep it as well
+            entityManager.detach(book);
+            index(book);
+          });
+    }
+    LOG.info("Indexed {} books for full-text search", documents.size());
+  }
+
+  @EventListener
+  public void onBookStored(BookStoredEvent event) {
+    index(event.book());
+  }
+
+  public synchronized void index(Book book) {
+    Book previous = documents.put(book.getIsbn(), book);
+
+    if (previous != null) {
+      for (String token : weightedTokens(previous).keySet()) {
+        Map<String, Float> posting = postings.get(token);
+        if (posting != null) {
+          posting.remove(previous.getIsbn());
+          if (posting.isEmpty()) {
+            postings.remove(token);
+          }
+        }
+      }
+    }
+
+    weightedTokens(book)
+        .forEach(
+            (token, weight) ->
+                postings
+                    .computeIfAbsent(token, key -> new ConcurrentHashMap<>())
+                    .put(book.getIsbn(), weight));
+  }
+
+  @Override
+  public BookSearchResult search(String query, int page, int size) {
+    Map<String, Float> scores = new HashMap<>();
+    int documentCount = Math.max(1, documents.size());
+
+    for (String token : tokenize(query)) {
+      Map<String, Float> posting = postings.get(token);
+      if (posting == null) {
+        continue;
+      }
+
+      float idf = (float) Math.log(1.0 + (double) documentCount / posting.size());
+      posting.forEach((isbn, weight) -> scores.merge(isbn, weight * idf, Float::sum));
+    }
+
+    List<Book> books =
+        topRanked(scores, (long) (page + 1) * size).stream()
+            .skip((long) page * size)
+            .map(entry -> documents.get(entry.getKey()))
+            .filter(Objects::nonNull)
+            .toList();
+
+    return new BookSearchResult(books, page, size, scores.size());
+  }
+
+  // keeps the best k matches in a heap whose root is the worst of them, instead of sorting every
+  // match of a common term
+  private static List<Map.Entry<String, Float>> topRanked(Map<String, Float> scores, long k) {
+    int capacity = (int) Math.min(k, scores.size());
+    if (capacity == 0) {
+      return List.of();
+    }
+
+    PriorityQueue<Map.Entry<String, Float>> heap =
+        new PriorityQueue<>(capacity, RANKING.reversed());
+    for (Map.Entry<String, Float> entry : scores.entrySet()) {
+      if (heap.size() < capacity) {
+        heap.add(entry);
+      } else if (RANKING.compare(entry, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(entry);
+      }
+    }
+
+    List<Map.Entry<String, Float>> ranked = new ArrayList<>(heap);
+    ranked.sort(RANKING);
+    return ranked;
+  }
+
+  private static Map<String, Float> weightedTokens(Book book) {
+    Map<String, Float> result = new HashMap<>();
+    addTokens(result, book.getTitle(), TITLE_WEIGHT);
+    addTokens(result, book.getAuthor(), AUTHOR_WEIGHT);
+    addTokens(result, book.getGenre(), GENRE_WEIGHT);
+    addTokens(result, book.getPublisher(), PUBLISHER_WEIGHT);
+    addTokens(result, book.getDescription(), DESCRIPTION_WEIGHT);
+    return result;
+  }
+
+  private static void addTokens(Map<String, Float> result, String text, float weight) {
+    for (String token : tokenize(text)) {
+      result.merge(token, weight, Float::sum);
+    }
+  }
+
+  static Set<String> tokenize(String text) {
+    if (text == null || text.isBlank()) {
+      return Set.of();
+    }
+
+    Set<String> tokens = new LinkedHashSet<>();
+    StringBuilder current = new StringBuilder();
+
+    for (int i = 0; i <= text.length(); i++) {
+      char character = i < text.length() ? text.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(character)) {
+        current.append(Character.toLowerCase(character));
+      } else if (!current.isEmpty()) {
+        String token = current.toString();
+        if ((token.length() > 1 || Character.isDigit(token.charAt(0)))
+            && !STOPWORDS.contains(token)) {
+          tokens.add(token);
+        }
+        current.setLength(0);
+      }
+    }
+
+    return tokens;
+  }
+}
@@ -0,0 +1,5 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+public record BookSearchResult(List<Book> books, int page, int size, long total) {}
@@ -0,0 +1,23 @@
+package de.rieckpil.courses.book.management;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public record BookSuggestion(String value, String type, String isbn, long reviews) {
+
+  static final String TITLE = "title";
+  static final String AUTHOR = "author";
+
+  static BookSuggestion title(String title, String isbn, long reviews) {
+    return new BookSuggestion(title, TITLE, isbn, reviews);
+  }
+
+  static BookSuggestion author(String author, long reviews) {
+    return new BookSuggestion(author, AUTHOR, null, reviews);
+  }
+
+  @JsonIgnore
+  boolean isSameAs(BookSuggestion other) {
+    return type.equals(other.type)
+        && (TITLE.equals(type) ? isbn.equals(other.isbn) : value.equals(other.value));
+  }
+}
@@ -0,0 +1,168 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import de.rieckpil.courses.book.review.ReviewChangedEvent;
+import de.rieckpil.courses.book.review.ReviewRepository;
+import de.rieckpil.courses.book.review.ReviewStatistic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class BookSuggestionIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BookSuggestionIndex.class.getName());
+
+  static final int MAX_SUGGESTIONS = 10;
+  private static final int MAX_KEY_LENGTH = 64;
+
+  private final BookRepository bookRepository;
+  private final ReviewRepository reviewRepository;
+
+  private final SuggestionTrie trie = new SuggestionTrie(MAX_SUGGESTIONS);
+
+  // guarded by this, only needed to keep the trie up-to-date
+  private final Map<String, IndexedBook> books = new HashMap<>();
+  private final Map<String, IndexedAuthor> authors = new HashMap<>();
+
+  public BookSuggestionIndex(BookRepository bookRepository, ReviewRepository reviewRepository) {
+    this.bookRepository = bookRepository;
+    this.reviewRepository = reviewRepository;
+  }
+
+  @Transactional(readOnly = true)
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    Map<String, Long> reviews = new HashMap<>();
+    for (ReviewStatistic statistic : reviewRepository.getReviewStatistics()) {
+      reviews.put(statistic.getIsbn(), statistic.getRatings());
+    }
+
+    try (Stream<Book> stream = bookRepository.streamAllByOrderByIdAsc()) {
+      stream.forEach(
+          book ->
+              index(
+                  book.getIsbn(),
+                  book.getTitle(),
+                  book.getAuthor(),
+                  reviews.getOrDefault(book.getIsbn(), 0L)));
+    }
+    LOG.info("Indexed {} books for suggestions", books.size());
+  }
+
+  @EventListener
+  public void onBookStored(BookStoredEvent event) {
+    Book book = event.book();
+    index(
+        book.getIsbn(),
+        book.getTitle(),
+        book.getAuthor(),
+        reviewRepository.countByBookIsbn(book.getIsbn()));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onReviewChanged(ReviewChangedEvent event) {
+    long reviews = reviewRepository.countByBookIsbn(event.isbn());
+    synchronized (this) {
+      IndexedBook book = books.get(event.isbn());
+      if (book != null && book.title().reviews() != reviews) {
+        index(book.title().isbn(), book.title().value(), book.author(), reviews);
+      }
+    }
+  }
+
+  public List<BookSuggestion> suggest(String prefix, int limit) {
+    String key = normalize(prefix);
+    key = key.substring(0, Math.min(key.length(), MAX_KEY_LENGTH));
+    if (key.isEmpty()) {
+      return List.of();
+    }
+    List<BookSuggestion> suggestions = trie.lookup(key);
+    return suggestions.subList(0, Math.min(Math.max(limit, 0), suggestions.size()));
+  }
+
+  synchronized void index(String isbn, String title, String author, long reviews) {
+    if (title == null) {
+      return;
+    }
+
+    IndexedBook previous = books.remove(isbn);
+
+    if (previous != null) {
+      for (String key : keys(previous.title().value())) {
+        trie.remove(key, previous.title());
+      }
+      updateAuthor(previous.author(), -previous.title().reviews(), -1);
+    }
+
+    BookSuggestion suggestion = BookSuggestion.title(title, isbn, reviews);
+    for (String key : keys(title)) {
+      trie.put(key, suggestion);
+    }
+
+    // intern the name as it's shared by all books of an author
+    String name = author == null || author.isBlank() ? null : author.intern();
+    books.put(isbn, new IndexedBook(suggestion, name));
+    updateAuthor(name, reviews, 1);
+  }
+
+  // authors are ranked by the reviews of all their books
+  private void updateAuthor(String name, long reviews, int books) {
+    if (name == null) {
+      return;
+    }
+
+    IndexedAuthor updated =
+        authors.merge(
+            name,
+            new IndexedAuthor(reviews, books),
+            (current, delta) ->
+                new IndexedAuthor(
+                    current.reviews() + delta.reviews(), current.books() + delta.books()));
+
+    BookSuggestion suggestion = BookSuggestion.author(name, updated.reviews());
+    if (updated.books() <= 0) {
+      authors.remove(name);
+      for (String key : keys(name)) {
+        trie.remove(key, suggestion);
+      }
+    } else {
+      for (String key : keys(name)) {
+        trie.put(key, suggestion);
+      }
+    }
+  }
+
+  // every word is a possible start of a suggestion: 'java' suggests 'Head First Java'
+  static List<String> keys(String text) {
+    String normalized = normalize(text);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < normalized.length(); i++) {
+      if (i == 0 || normalized.charAt(i - 1) == ' ') {
+        keys.add(normalized.substring(i, Math.min(normalized.length(), i + MAX_KEY_LENGTH)));
+      }
+    }
+    return keys;
+  }
+
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+
+  private record IndexedBook(BookSuggestion title, String author) {}
+
+  private record IndexedAuthor(long reviews, int books) {}
+}
@@ -0,0 +1,14 @@
+package de.rieckpil.courses.book.management;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// list view of a book without the (unbounded) description, see BookRepository
+public record BookSummary(
+    @JsonIgnore Long id,
+    String isbn,
+    String title,
+    String author,
+    String genre,
+    String thumbnailUrl,
+    String publisher,
+    Long pages) {}
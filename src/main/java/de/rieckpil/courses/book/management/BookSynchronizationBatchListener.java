@@ -0,0 +1,158 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import io.awspring.cloud.sqs.annotation.SqsListener;
+import io.awspring.cloud.sqs.listener.acknowledgement.BatchAcknowledgement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+// alternative to the BookSynchronizationListener for backfilling large catalogs
+@Component
+@ConditionalOnProperty(prefix = "sqs", name = "book-synchronization-mode", havingValue = "batch")
+public class BookSynchronizationBatchListener {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BookSynchronizationBatchListener.class.getName());
+
+  private final BookRepository bookRepository;
+  private final OpenLibraryApiClient openLibraryApiClient;
+  private final ApplicationEventPublisher applicationEventPublisher;
+  private final Scheduler blockingScheduler;
+  private final BookSynchronizationErrorHandler errorHandler;
+
+  public BookSynchronizationBatchListener(
+      BookRepository bookRepository,
+      OpenLibraryApiClient openLibraryApiClient,
+      ApplicationEventPublisher applicationEventPublisher,
+      Scheduler blockingScheduler,
+      BookSynchronizationErrorHandler errorHandler) {
+    this.bookRepository = bookRepository;
+    this.openLibraryApiClient = openLibraryApiClient;
+    this.applicationEventPublisher = applicationEventPublisher;
+    this.blockingScheduler = blockingScheduler;
+    this.errorHandler = errorHandler;
+  }
+
+  // messages that aren't acknowledged are redelivered once their visibility timeout expires
+  @SqsListener(
+      value = "${sqs.book-synchronization-queue}",
+      maxMessagesPerPoll = "10",
+      acknowledgementMode = "MANUAL")
+  public CompletableFuture<Void> consumeBookUpdates(
+      List<Message<BookSynchronization>> messages,
+      BatchAcknowledgement<BookSynchronization> acknowledgement) {
+    return Mono.fromCallable(() -> processBookUpdates(messages, acknowledgement))
+        .subscribeOn(blockingScheduler)
+        .flatMap(this::retryUnsettled)
+        .then()
+        .toFuture();
+  }
+
+  // part of the batch may be acknowledged already, so the remaining updates are handed to the error
+  // handler right here instead of failing the whole batch. ISBNs Open Library doesn't know are
+  // retried with backoff like failed updates and end up in the dead-letter queue eventually.
+  private Mono<Integer> retryUnsettled(Unsettled unsettled) {
+    if (unsettled.messages().isEmpty()) {
+      return Mono.empty();
+    }
+    return Mono.fromFuture(() -> errorHandler.retryLater(unsettled.messages(), unsettled.cause()));
+  }
+
+  private Unsettled processBookUpdates(
+      List<Message<BookSynchronization>> messages,
+      BatchAcknowledgement<BookSynchronization> acknowledgement) {
+
+    LOG.info("Incoming batch of {} book updates", messages.size());
+
+    List<Message<BookSynchronization>> done = new ArrayList<>();
+    List<Message<BookSynchronization>> pending = new ArrayList<>();
+
+    for (Message<BookSynchronization> message : messages) {
+      if (message.getPayload().isbn().length() != 13) {
+        LOG.warn(
+            "Incoming isbn '{}' is not 13 characters long, rejecting it",
+            message.getPayload().isbn());
+        done.add(message);
+      } else {
+        pending.add(message);
+      }
+    }
+
+    Set<String> existingIsbns = new HashSet<>(bookRepository.findExistingIsbns(isbnsOf(pending)));
+
+    pending.removeIf(
+        message -> {
+          boolean existing = existingIsbns.contains(message.getPayload().isbn());
+          if (existing) {
+            done.add(message);
+          }
+          return existing;
+        });
+
+    // acknowledge what's settled before talking to Open Library, which might fail
+    if (!done.isEmpty()) {
+      acknowledgement.acknowledge(done);
+    }
+
+    if (pending.isEmpty()) {
+      return Unsettled.NONE;
+    }
+
+    Map<String, Book> fetchedBooks;
+    List<Book> storedBooks;
+    try {
+      fetchedBooks = openLibraryApiClient.fetchMetadataForBooks(isbnsOf(pending));
+      // books stored concurrently by another consumer are skipped, their messages are done as well
+      storedBooks = bookRepository.insertAllIfAbsent(fetchedBooks.values());
+    } catch (RuntimeException e) {
+      LOG.warn("Unable to synchronize a batch of {} book updates", pending.size(), e);
+      return new Unsettled(pending, e);
+    }
+
+    for (Book book : storedBooks) {
+      applicationEventPublisher.publishEvent(new BookStoredEvent(book));
+    }
+
+    List<Message<BookSynchronization>> stored = new ArrayList<>();
+    List<Message<BookSynchronization>> unresolved = new ArrayList<>();
+    for (Message<BookSynchronization> message : pending) {
+      (fetchedBooks.containsKey(message.getPayload().isbn()) ? stored : unresolved).add(message);
+    }
+
+    if (!stored.isEmpty()) {
+      acknowledgement.acknowledge(stored);
+    }
+
+    LOG.info(
+        "Successfully stored {} new books, {} updates remain unresolved",
+        storedBooks.size(),
+        unresolved.size());
+    return new Unsettled(
+        unresolved, new UnknownIsbnException("Open Library returned no metadata for the book"));
+  }
+
+  private record Unsettled(List<Message<BookSynchronization>> messages, Throwable cause) {
+
+    static final Unsettled NONE = new Unsettled(List.of(), null);
+  }
+
+  private Set<String> isbnsOf(List<Message<BookSynchronization>> messages) {
+    return messages.stream()
+        .map(message -> message.getPayload().isbn())
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+}
@@ -0,0 +1,206 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.random.RandomGenerator;
+
+import io.awspring.cloud.sqs.listener.SqsHeaders;
+import io.awspring.cloud.sqs.listener.Visibility;
+import io.awspring.cloud.sqs.listener.acknowledgement.Acknowledgement;
+import io.awspring.cloud.sqs.listener.errorhandler.AsyncErrorHandler;
+import io.awspring.cloud.sqs.operations.SqsAsyncOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+// failed book updates are retried by SQS instead of inside the listener: the message stays
+// invisible for an exponentially growing, fully jittered delay and is moved to the dead-letter
+// queue once it was received too often. Updates shed by the circuit breaker or the concurrency
+// limiter say nothing about the message itself, they are deferred for a fixed delay and never
+// dead-lettered, so an Open Library outage doesn't use up the attempts of valid ISBNs.
+@Component
+public class BookSynchronizationErrorHandler implements AsyncErrorHandler<Object> {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BookSynchronizationErrorHandler.class.getName());
+
+  private final SqsAsyncOperations sqsOperations;
+  private final String deadLetterQueueName;
+  private final int maxAttempts;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final Duration deferral;
+  private final RandomGenerator random;
+
+  @Autowired
+  public BookSynchronizationErrorHandler(
+      SqsAsyncOperations sqsOperations,
+      @Value("${sqs.book-synchronization-dead-letter-queue:${sqs.book-synchronization-queue}-dlq}")
+          String deadLetterQueueName,
+      @Value("${sqs.book-synchronization-max-attempts:8}") int maxAttempts,
+      @Value("${sqs.book-synchronization-backoff.base-delay:PT2S}") Duration baseDelay,
+      @Value("${sqs.book-synchronization-backoff.max-delay:PT15M}") Duration maxDelay,
+      @Value("${sqs.book-synchronization-backoff.deferral:PT30S}") Duration deferral) {
+    this(
+        sqsOperations,
+        deadLetterQueueName,
+        maxAttempts,
+        baseDelay,
+        maxDelay,
+        deferral,
+        RandomGenerator.getDefault());
+  }
+
+  BookSynchronizationErrorHandler(
+      SqsAsyncOperations sqsOperations,
+      String deadLetterQueueName,
+      int maxAttempts,
+      Duration baseDelay,
+      Duration maxDelay,
+      Duration deferral,
+      RandomGenerator random) {
+    this.sqsOperations = sqsOperations;
+    this.deadLetterQueueName = deadLetterQueueName;
+    this.maxAttempts = maxAttempts;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.deferral = deferral;
+    this.random = random;
+  }
+
+  // completing normally marks the message as recovered, so the listener acknowledges it
+  @Override
+  public CompletableFuture<Void> handle(Message<Object> message, Throwable t) {
+    return redeliverOrDeadLetter(message, t)
+        .thenCompose(
+            deadLettered ->
+                deadLettered ? CompletableFuture.completedFuture(null) : failedFuture(t));
+  }
+
+  // batches are acknowledged manually, so dead-lettered messages are acknowledged right here
+  @Override
+  public CompletableFuture<Void> handle(Collection<Message<Object>> messages, Throwable t) {
+    return retryLater(messages, t)
+        .thenCompose(
+            deadLettered ->
+                deadLettered == messages.size()
+                    ? CompletableFuture.completedFuture(null)
+                    : failedFuture(t));
+  }
+
+  // delays the redelivery of each message or moves it to the dead-letter queue and acknowledges
+  // it. Completes with the number of dead-lettered messages
+  <T> CompletableFuture<Integer> retryLater(Collection<Message<T>> messages, Throwable t) {
+    List<CompletableFuture<Boolean>> outcomes = new ArrayList<>(messages.size());
+    List<Message<T>> deadLettered = new ArrayList<>();
+
+    for (Message<T> message : messages) {
+      outcomes.add(
+          redeliverOrDeadLetter(message, t)
+              .thenApply(
+                  moved -> {
+                    if (moved) {
+                      synchronized (deadLettered) {
+                        deadLettered.add(message);
+                      }
+                    }
+                    return moved;
+                  }));
+    }
+
+    return CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new))
+        .thenCompose(
+            done ->
+                deadLettered.isEmpty()
+                    ? CompletableFuture.<Void>completedFuture(null)
+                    : Acknowledgement.acknowledgeAsync(deadLettered))
+        .thenApply(done -> deadLettered.size());
+  }
+
+  // completes with true when the message was moved to the dead-letter queue
+  private CompletableFuture<Boolean> redeliverOrDeadLetter(Message<?> message, Throwable t) {
+    if (isShed(t)) {
+      LOG.warn(
+          "Book update '{}' was deferred, retrying in {}s: {}",
+          message.getPayload(),
+          deferral.toSeconds(),
+          t.getMessage());
+      return delayRedelivery(message, (int) deferral.toSeconds());
+    }
+
+    int attempt = receiveCount(message);
+
+    if (attempt >= maxAttempts) {
+      LOG.error(
+          "Giving up on book update '{}' after {} attempts, moving it to '{}'",
+          message.getPayload(),
+          attempt,
+          deadLetterQueueName,
+          t);
+      return sqsOperations
+          .sendAsync(deadLetterQueueName, message.getPayload())
+          .thenApply(result -> true);
+    }
+
+    int delaySeconds = backoffSeconds(attempt);
+    LOG.warn(
+        "Book update '{}' failed on attempt {}, retrying in {}s: {}",
+        message.getPayload(),
+        attempt,
+        delaySeconds,
+        t.getMessage());
+    return delayRedelivery(message, delaySeconds);
+  }
+
+  private CompletableFuture<Boolean> delayRedelivery(Message<?> message, int delaySeconds) {
+    Visibility visibility =
+        message.getHeaders().get(SqsHeaders.SQS_VISIBILITY_TIMEOUT_HEADER, Visibility.class);
+    if (visibility == null) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return visibility
+        .changeToAsync(delaySeconds)
+        .handle(
+            (result, error) -> {
+              if (error != null) {
+                // the message then simply reappears after the queue's default visibility timeout
+                LOG.warn("Unable to delay redelivery of book update '{}'", message.getPayload());
+              }
+              return false;
+            });
+  }
+
+  // the listener container wraps the listener's exception, so the whole cause chain is checked
+  static boolean isShed(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof RejectedExecutionException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // full jitter: a random delay between zero and the exponentially growing, capped upper bound
+  int backoffSeconds(int attempt) {
+    long upperBound =
+        Math.min(maxDelay.toSeconds(), baseDelay.toSeconds() << Math.min(attempt - 1, 30));
+    return (int) random.nextLong(upperBound + 1);
+  }
+
+  private int receiveCount(Message<?> message) {
+    Object receiveCount =
+        message.getHeaders().get(SqsHeaders.MessageSystemAttributes.SQS_APPROXIMATE_RECEIVE_COUNT);
+    return receiveCount == null ? 1 : Integer.parseInt(receiveCount.toString());
+  }
+
+  private static CompletableFuture<Void> failedFuture(Throwable t) {
+    return CompletableFuture.failedFuture(t);
+  }
+}
@@ -1,44 +1,101 @@
 package de.rieckpil.courses.book.management;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import io.awspring.cloud.sqs.annotation.SqsListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Component
+@ConditionalOnProperty(
+    prefix = "sqs",
+    name = "book-synchronization-mode",
+    havingValue = "single",
+    matchIfMissing = true)
 public class BookSynchronizationListener {
 
   private static final Logger LOG =
       LoggerFactory.getLogger(BookSynchronizationListener.class.getName());
 
   private final BookRepository bookRepository;
-  private final OpenLibraryApiClient openLibraryApiClient;
+  private final BookMetadataProvider bookMetadataProvider;
+  private final ApplicationEventPublisher applicationEventPublisher;
+  private final Scheduler blockingScheduler;
+  private final SingleFlight<String, Book> synchronizations = new SingleFlight<>();
 
   public BookSynchronizationListener(
-      BookRepository bookRepository, OpenLibraryApiClient openLibraryApiClient) {
+      BookRepository bookRepository,
+      BookMetadataProvider bookMetadataProvider,
+      ApplicationEventPublisher applicationEventPublisher,
+      Scheduler blockingScheduler) {
     this.bookRepository = bookRepository;
-    this.openLibraryApiClient = openLibraryApiClient;
+    this.bookMetadataProvider = bookMetadataProvider;
+    this.applicationEventPublisher = applicationEventPublisher;
+    this.blockingScheduler = blockingScheduler;
   }
 
-  @SqsListener("${sqs.book-synchronization-queue}")
-  public void consumeBookUpdates(BookSynchronization bookSynchronization) {
+  // the listener thread is released right away, the message is acknowledged once the returned
+  // future completes
+  @SqsListener(
+      value = "${sqs.book-synchronization-queue}",
+      maxConcurrentMessages = "${sqs.book-synchronization-max-concurrent-messages:10}")
+  public CompletableFuture<Void> consumeBookUpdates(BookSynchronization bookSynchronization) {
 
     String isbn = bookSynchronization.isbn();
     LOG.info("Incoming book update for isbn '{}'", isbn);
 
     if (isbn.length() != 13) {
       LOG.warn("Incoming isbn for book is not 13 characters long, rejecting it");
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
-    if (bookRepository.findByIsbn(isbn) != null) {
-      LOG.debug("Book with isbn '{}' is already present, rejecting it", isbn);
-      return;
-    }
+    // duplicates of a message being processed right now wait for its outcome instead of fetching
+    // and inserting the same book a second time
+    return synchronizations
+        .execute(isbn, () -> synchronizeBook(isbn))
+        // the message becomes visible again after its visibility timeout and is retried then
+        .doOnError(
+            RejectedExecutionException.class,
+            e ->
+                LOG.warn(
+                    "Open Library is saturated, deferring book update for isbn '{}': {}",
+                    isbn,
+                    e.getMessage()))
+        .then()
+        .toFuture();
+  }
 
-    Book book = openLibraryApiClient.fetchMetadataForBook(isbn);
-    book = bookRepository.save(book);
+  private Mono<Book> synchronizeBook(String isbn) {
+    return Mono.fromCallable(() -> bookRepository.findByIsbn(isbn) != null)
+        .subscribeOn(blockingScheduler)
+        .flatMap(
+            present -> {
+              if (present) {
+                LOG.debug("Book with isbn '{}' is already present, rejecting it", isbn);
+                return Mono.empty();
+              }
+              return bookMetadataProvider.fetchMetadataForBookAsync(isbn);
+            })
+        // don't block the HTTP client's event loop with JDBC
+        .publishOn(blockingScheduler)
+        .flatMap(fetchedBook -> storeBook(isbn, fetchedBook));
+  }
+
+  private Mono<Book> storeBook(String isbn, Book fetchedBook) {
+    // another node might have stored the same isbn in the meantime
+    if (!bookRepository.insertIfAbsent(fetchedBook)) {
+      LOG.debug("Book with isbn '{}' was stored concurrently, rejecting it", isbn);
+      return Mono.empty();
+    }
+    applicationEventPublisher.publishEvent(new BookStoredEvent(fetchedBook));
 
-    LOG.info("Successfully stored new book '{}'", book);
+    LOG.info("Successfully stored new book '{}'", fetchedBook);
+    return Mono.just(fetchedBook);
   }
 }
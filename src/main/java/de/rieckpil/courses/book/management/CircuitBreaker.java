@@ -0,0 +1,173 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+// fails calls fast with a RejectedExecutionException once the failure rate of the last calls
+// exceeds the threshold, after the wait duration a few trial calls decide whether to close again
+class CircuitBreaker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class.getName());
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private enum Outcome {
+    SUCCESS,
+    FAILURE,
+    IGNORED
+  }
+
+  private final String name;
+  private final int failureRateThreshold;
+  private final Duration waitDurationInOpenState;
+  private final int permittedCallsInHalfOpenState;
+  private final Predicate<Throwable> recordFailure;
+  private final Clock clock;
+
+  // guarded by this
+  private final boolean[] window;
+  private int windowIndex;
+  private int calls;
+  private int failures;
+  private State state = State.CLOSED;
+  private Instant openedAt;
+  private int halfOpenCalls;
+  private int halfOpenSuccesses;
+
+  CircuitBreaker(
+      String name,
+      int failureRateThreshold,
+      int slidingWindowSize,
+      Duration waitDurationInOpenState,
+      int permittedCallsInHalfOpenState,
+      Predicate<Throwable> recordFailure,
+      Clock clock) {
+    this.name = name;
+    this.failureRateThreshold = failureRateThreshold;
+    this.window = new boolean[slidingWindowSize];
+    this.waitDurationInOpenState = waitDurationInOpenState;
+    this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    this.recordFailure = recordFailure;
+    this.clock = clock;
+  }
+
+  <T> Mono<T> protect(Mono<T> call) {
+    return Mono.defer(
+        () -> {
+          if (!tryAcquirePermission()) {
+            return Mono.error(
+                new RejectedExecutionException("Circuit breaker '" + name + "' is open"));
+          }
+
+          AtomicBoolean recorded = new AtomicBoolean();
+          return call.doOnSuccess(
+                  value -> {
+                    if (recorded.compareAndSet(false, true)) {
+                      record(Outcome.SUCCESS);
+                    }
+                  })
+              .doOnError(
+                  error -> {
+                    if (recorded.compareAndSet(false, true)) {
+                      record(recordFailure.test(error) ? Outcome.FAILURE : Outcome.IGNORED);
+                    }
+                  })
+              .doOnCancel(
+                  () -> {
+                    if (recorded.compareAndSet(false, true)) {
+                      record(Outcome.IGNORED);
+                    }
+                  });
+        });
+  }
+
+  synchronized State state() {
+    if (state == State.OPEN && waitDurationElapsed()) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  private synchronized boolean tryAcquirePermission() {
+    if (state == State.OPEN) {
+      if (!waitDurationElapsed()) {
+        return false;
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (halfOpenCalls + halfOpenSuccesses >= permittedCallsInHalfOpenState) {
+        return false;
+      }
+      halfOpenCalls++;
+    }
+    return true;
+  }
+
+  private synchronized void record(Outcome outcome) {
+    switch (state) {
+      case CLOSED -> {
+        if (outcome == Outcome.IGNORED) {
+          return;
+        }
+        boolean failed = outcome == Outcome.FAILURE;
+        if (calls == window.length) {
+          failures -= window[windowIndex] ? 1 : 0;
+        } else {
+          calls++;
+        }
+        window[windowIndex] = failed;
+        failures += failed ? 1 : 0;
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (calls == window.length && failures * 100 >= failureRateThreshold * calls) {
+          transitionTo(State.OPEN);
+        }
+      }
+      case HALF_OPEN -> {
+        halfOpenCalls = Math.max(0, halfOpenCalls - 1);
+        if (outcome == Outcome.FAILURE) {
+          transitionTo(State.OPEN);
+        } else if (outcome == Outcome.SUCCESS
+            && ++halfOpenSuccesses >= permittedCallsInHalfOpenState) {
+          transitionTo(State.CLOSED);
+        }
+      }
+        // outcomes of calls started before the breaker opened
+      case OPEN -> {}
+    }
+  }
+
+  private void transitionTo(State next) {
+    LOG.warn("Circuit breaker '{}' changes from {} to {}", name, state, next);
+    state = next;
+    switch (next) {
+      case OPEN -> openedAt = clock.instant();
+      case HALF_OPEN -> {
+        halfOpenCalls = 0;
+        halfOpenSuccesses = 0;
+      }
+      case CLOSED -> {
+        calls = 0;
+        failures = 0;
+        windowIndex = 0;
+      }
+    }
+  }
+
+  private boolean waitDurationElapsed() {
+    return !clock.instant().isBefore(openedAt.plus(waitDurationInOpenState));
+  }
+}
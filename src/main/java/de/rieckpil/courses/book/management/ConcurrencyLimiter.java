@@ -0,0 +1,211 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+// caps the number of subscribed requests, further ones wait in a bounded queue without blocking
+// and are rejected once they waited longer than max-wait.
+// The cap adapts AIMD style: it grows by one per round of fast successful requests and shrinks
+// multiplicatively on failures or responses slower than the latency threshold.
+class ConcurrencyLimiter {
+
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxPending;
+  private final long maxWaitNanos;
+  private final long latencyThresholdNanos;
+
+  // guarded by this
+  private final Queue<Runnable> pending = new ArrayDeque<>();
+  private int inFlight;
+  private double limit;
+
+  ConcurrencyLimiter(int maxInFlight, int maxPending) {
+    this(
+        maxInFlight,
+        maxInFlight,
+        maxInFlight,
+        maxPending,
+        Duration.ofNanos(Long.MAX_VALUE),
+        Duration.ofNanos(Long.MAX_VALUE));
+  }
+
+  ConcurrencyLimiter(
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      int maxPending,
+      Duration maxWait,
+      Duration latencyThreshold) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxPending = maxPending;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.latencyThresholdNanos = latencyThreshold.toNanos();
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  <T> Mono<T> limit(Mono<T> request) {
+    return Mono.create(
+        sink -> {
+          PendingRequest<T> pendingRequest = new PendingRequest<>(request, sink);
+          sink.onCancel(pendingRequest::cancel);
+
+          boolean startNow;
+          synchronized (this) {
+            startNow = inFlight < currentLimit();
+            if (startNow) {
+              inFlight++;
+            } else if (pending.size() < maxPending) {
+              pending.add(pendingRequest);
+            } else {
+              sink.error(
+                  new RejectedExecutionException(
+                      "Too many pending requests, limit is " + maxPending));
+              return;
+            }
+          }
+
+          if (startNow) {
+            pendingRequest.run();
+          } else if (maxWaitNanos != Long.MAX_VALUE) {
+            pendingRequest.expireAfter(maxWaitNanos);
+          }
+        });
+  }
+
+  synchronized int limit() {
+    return currentLimit();
+  }
+
+  synchronized int inFlight() {
+    return inFlight;
+  }
+
+  synchronized int pending() {
+    return pending.size();
+  }
+
+  private void release(SignalType signal, long latencyNanos) {
+    List<Runnable> next = new ArrayList<>(1);
+    synchronized (this) {
+      adapt(signal, latencyNanos);
+      inFlight--;
+
+      // hand the freed permit, and any gained by a raised limit, over to waiting requests
+      while (inFlight < currentLimit() && !pending.isEmpty()) {
+        next.add(pending.poll());
+        inFlight++;
+      }
+    }
+    next.forEach(Runnable::run);
+  }
+
+  // guarded by this, cancellations say nothing about the upstream and are ignored
+  private void adapt(SignalType signal, long latencyNanos) {
+    if (signal == SignalType.ON_ERROR || latencyNanos > latencyThresholdNanos) {
+      limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+    } else if (signal == SignalType.ON_COMPLETE && inFlight * 2 >= currentLimit()) {
+      // only grow while the limit is actually used
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  private int currentLimit() {
+    return (int) limit;
+  }
+
+  private final class PendingRequest<T> implements Runnable {
+
+    private final Mono<T> request;
+    private final MonoSink<T> sink;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile Disposable subscription;
+    private volatile Disposable expiry;
+
+    PendingRequest(Mono<T> request, MonoSink<T> sink) {
+      this.request = request;
+      this.sink = sink;
+    }
+
+    // only invoked while holding a permit
+    @Override
+    public void run() {
+      Disposable pendingExpiry = expiry;
+      if (pendingExpiry != null) {
+        pendingExpiry.dispose();
+      }
+      if (cancelled) {
+        releaseOnce(SignalType.CANCEL, 0);
+        return;
+      }
+
+      long start = System.nanoTime();
+      Disposable current =
+          request
+              .doFinally(signal -> releaseOnce(signal, System.nanoTime() - start))
+              .subscribe(sink::success, sink::error, () -> sink.success());
+      subscription = current;
+
+      // cancelled while subscribing
+      if (cancelled) {
+        current.dispose();
+      }
+    }
+
+    // a request started in the meantime isn't in the queue anymore and is left alone
+    void expireAfter(long nanos) {
+      expiry =
+          Schedulers.parallel()
+              .schedule(
+                  () -> {
+                    boolean queued;
+                    synchronized (ConcurrencyLimiter.this) {
+                      queued = pending.remove(this);
+                    }
+                    if (queued) {
+                      sink.error(
+                          new RejectedExecutionException(
+                              "Waited too long for a permit, limit is " + limit()));
+                    }
+                  },
+                  nanos,
+                  TimeUnit.NANOSECONDS);
+    }
+
+    void cancel() {
+      cancelled = true;
+
+      boolean queued;
+      synchronized (ConcurrencyLimiter.this) {
+        queued = pending.remove(this);
+      }
+
+      Disposable current = subscription;
+      if (!queued && current != null) {
+        current.dispose();
+      }
+    }
+
+    private void releaseOnce(SignalType signal, long latencyNanos) {
+      if (released.compareAndSet(false, true)) {
+        release(signal, latencyNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "catalog.search", name = "mode", havingValue = "database")
+public class DatabaseBookSearch implements BookSearch {
+
+  private final BookRepository bookRepository;
+
+  public DatabaseBookSearch(BookRepository bookRepository) {
+    this.bookRepository = bookRepository;
+  }
+
+  @Override
+  public BookSearchResult search(String query, int page, int size) {
+    List<Book> books = bookRepository.searchByFullText(query, size, (long) page * size);
+
+    // skip the count query when the first page already contains all hits
+    long total =
+        page == 0 && books.size() < size ? books.size() : bookRepository.countByFullText(query);
+
+    return new BookSearchResult(books, page, size, total);
+  }
+}
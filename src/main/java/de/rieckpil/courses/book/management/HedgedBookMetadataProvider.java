@@ -0,0 +1,162 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// asks the primary provider and only sends a second request once the primary takes longer than
+// its recent p95 latency. Whichever answers first wins and the other request is cancelled, so about
+// one in twenty requests is sent twice instead of every request. The hedge goes through the
+// RestTemplate client, so a stalled WebClient connection pool or event loop doesn't stall it as
+// well. It bypasses the circuit breaker and limiter of the primary, max-concurrent-hedges bounds
+// its load instead.
+@Primary
+@Component
+public class HedgedBookMetadataProvider implements BookMetadataProvider {
+
+  // the percentile of a handful of requests says nothing, the initial delay applies until then
+  private static final int MIN_SAMPLES = 20;
+  private static final long DELAY_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final BookMetadataProvider primary;
+  private final BookMetadataProvider hedge;
+  private final long initialDelayNanos;
+  private final long minDelayNanos;
+  private final int maxConcurrentHedges;
+
+  private final Timer primaryLatency;
+  private final Counter hedges;
+  private final Counter hedgeWins;
+  private final AtomicInteger hedgesInFlight = new AtomicInteger();
+
+  private volatile long hedgeDelayNanos;
+  private volatile long hedgeDelayRefreshedAt;
+
+  public HedgedBookMetadataProvider(
+      @Qualifier("openLibraryApiClient") BookMetadataProvider primary,
+      @Qualifier("openLibraryRestTemplateApiClient") BookMetadataProvider hedge,
+      MeterRegistry meterRegistry,
+      @Value("${clients.book-metadata.hedging.initial-delay:PT500MS}") Duration initialDelay,
+      @Value("${clients.book-metadata.hedging.min-delay:PT50MS}") Duration minDelay,
+      @Value("${clients.book-metadata.hedging.max-concurrent-hedges:16}") int maxConcurrentHedges) {
+    this.primary = primary;
+    this.hedge = hedge;
+    this.initialDelayNanos = initialDelay.toNanos();
+    this.minDelayNanos = minDelay.toNanos();
+    this.maxConcurrentHedges = maxConcurrentHedges;
+    this.hedgeDelayNanos = initialDelayNanos;
+    this.hedgeDelayRefreshedAt = System.nanoTime();
+
+    this.primaryLatency =
+        Timer.builder("book.metadata.provider.latency")
+            .tag("provider", primary.name())
+            .publishPercentiles(0.95)
+            .distributionStatisticExpiry(Duration.ofMinutes(1))
+            .register(meterRegistry);
+    this.hedges = meterRegistry.counter("book.metadata.provider.hedges", "result", "sent");
+    this.hedgeWins = meterRegistry.counter("book.metadata.provider.hedges", "result", "won");
+  }
+
+  @Override
+  public String name() {
+    return "hedged(" + primary.name() + "," + hedge.name() + ")";
+  }
+
+  // a failing primary is covered by the hedge as well, unless the hedge would fail the same way.
+  // Fails with the primary's error when both fail, so callers see the same errors as without
+  // hedging
+  @Override
+  public Mono<Book> fetchMetadataForBookAsync(String isbn) {
+    return Mono.defer(
+        () -> {
+          AtomicReference<Throwable> primaryError = new AtomicReference<>();
+          Sinks.One<Throwable> primaryGaveUp = Sinks.one();
+          long start = System.nanoTime();
+
+          Mono<Book> primaryRequest =
+              primary
+                  .fetchMetadataForBookAsync(isbn)
+                  .doOnSuccess(
+                      book ->
+                          primaryLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                  // a primary overtaken by the hedge took at least this long
+                  .doOnCancel(
+                      () -> primaryLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                  .doOnError(
+                      e -> {
+                        primaryError.set(e);
+                        if (!isHedgeable(e)) {
+                          primaryGaveUp.tryEmitValue(e);
+                        }
+                      });
+
+          Mono<Book> hedgeRequest =
+              Mono.delay(Duration.ofNanos(hedgeDelay()))
+                  .flatMap(tick -> hedgeOrNothing(isbn))
+                  .takeUntilOther(primaryGaveUp.asMono());
+
+          return Mono.firstWithValue(primaryRequest, hedgeRequest)
+              .onErrorMap(
+                  e -> primaryError.get() != null && primaryError.get() != e,
+                  e -> primaryError.get());
+        });
+  }
+
+  // a book Open Library doesn't know would be rejected just the same. While the circuit breaker
+  // is open or the limiter is full, a hedge would only add load to a struggling Open Library.
+  private static boolean isHedgeable(Throwable error) {
+    return !(error instanceof RejectedExecutionException
+        || error instanceof UnknownIsbnException
+        || error instanceof WebClientResponseException responseException
+            && responseException.getStatusCode().is4xxClientError());
+  }
+
+  private Mono<Book> hedgeOrNothing(String isbn) {
+    if (hedgesInFlight.incrementAndGet() > maxConcurrentHedges) {
+      hedgesInFlight.decrementAndGet();
+      return Mono.empty();
+    }
+    hedges.increment();
+    // a cancelled hedge interrupts its blocking request, which ends with the read timeout at the
+    // latest
+    return hedge
+        .fetchMetadataForBookAsync(isbn)
+        .doOnSuccess(book -> hedgeWins.increment())
+        .doFinally(signal -> hedgesInFlight.decrementAndGet());
+  }
+
+  // computing the percentile isn't free, it's refreshed once a second at most
+  long hedgeDelay() {
+    long now = System.nanoTime();
+    if (now - hedgeDelayRefreshedAt > DELAY_REFRESH_INTERVAL_NANOS) {
+      hedgeDelayRefreshedAt = now;
+      hedgeDelayNanos = percentileDelay();
+    }
+    return hedgeDelayNanos;
+  }
+
+  private long percentileDelay() {
+    if (primaryLatency.count() < MIN_SAMPLES) {
+      return initialDelayNanos;
+    }
+    ValueAtPercentile[] percentiles = primaryLatency.takeSnapshot().percentileValues();
+    if (percentiles.length == 0) {
+      return initialDelayNanos;
+    }
+    return Math.max(minDelayNanos, (long) percentiles[0].value(TimeUnit.NANOSECONDS));
+  }
+}
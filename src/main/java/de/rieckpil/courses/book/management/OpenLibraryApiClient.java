@@ -1,58 +1,256 @@
 package de.rieckpil.courses.book.management;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.util.retry.Retry;
 
 @Component
-public class OpenLibraryApiClient {
+public class OpenLibraryApiClient implements BookMetadataProvider {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OpenLibraryApiClient.class.getName());
 
   private final WebClient openLibraryWebClient;
+  private final OpenLibraryResponseCache responseCache;
+  private final OpenLibraryBookDecoder bookDecoder;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final CircuitBreaker circuitBreaker;
+  private final Scheduler blockingScheduler;
+
+  @Autowired
+  public OpenLibraryApiClient(
+      @Qualifier("openLibraryWebClient") WebClient openLibraryWebClient,
+      OpenLibraryResponseCache responseCache,
+      ObjectMapper objectMapper,
+      @Value("${clients.open-library.initial-concurrent-requests:16}")
+          int initialConcurrentRequests,
+      @Value("${clients.open-library.max-concurrent-requests:256}") int maxConcurrentRequests,
+      @Value("${clients.open-library.max-pending-requests:32}") int maxPendingRequests,
+      @Value("${clients.open-library.max-pending-wait:PT2S}") Duration maxPendingWait,
+      @Value("${clients.open-library.latency-threshold:PT1S}") Duration latencyThreshold,
+      @Value("${clients.open-library.circuit-breaker.failure-rate-threshold:50}")
+          int failureRateThreshold,
+      @Value("${clients.open-library.circuit-breaker.sliding-window-size:20}")
+          int slidingWindowSize,
+      @Value("${clients.open-library.circuit-breaker.wait-duration-in-open-state:PT30S}")
+          Duration waitDurationInOpenState,
+      Scheduler blockingScheduler) {
+    this(
+        openLibraryWebClient,
+        responseCache,
+        objectMapper,
+        new ConcurrencyLimiter(
+            initialConcurrentRequests,
+            1,
+            maxConcurrentRequests,
+            maxPendingRequests,
+            maxPendingWait,
+            latencyThreshold),
+        new CircuitBreaker(
+            "open-library",
+            failureRateThreshold,
+            slidingWindowSize,
+            waitDurationInOpenState,
+            3,
+            OpenLibraryApiClient::isUpstreamFailure,
+            Clock.systemUTC()),
+        blockingScheduler);
+  }
 
-  public OpenLibraryApiClient(WebClient openLibraryWebClient) {
+  OpenLibraryApiClient(
+      WebClient openLibraryWebClient,
+      OpenLibraryResponseCache responseCache,
+      ObjectMapper objectMapper,
+      ConcurrencyLimiter concurrencyLimiter,
+      CircuitBreaker circuitBreaker,
+      Scheduler blockingScheduler) {
     this.openLibraryWebClient = openLibraryWebClient;
+    this.responseCache = responseCache;
+    this.bookDecoder = new OpenLibraryBookDecoder(objectMapper.getFactory());
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.blockingScheduler = blockingScheduler;
   }
 
+  @Override
+  public String name() {
+    return "open-library";
+  }
+
+  // blocking callers have no redelivery to fall back on, so failed attempts are retried here
   public Book fetchMetadataForBook(String isbn) {
+    return fetchMetadataForBookAsync(isbn)
+        .retryWhen(
+            Retry.backoff(2, Duration.ofMillis(200))
+                .jitter(0.5)
+                .filter(OpenLibraryApiClient::isUpstreamFailure))
+        .block();
+  }
+
+  // a single attempt, the SQS listeners retry through delayed redelivery instead. Fails with a
+  // RejectedExecutionException when too many requests are already waiting or Open Library is
+  // considered unavailable
+  @Override
+  public Mono<Book> fetchMetadataForBookAsync(String isbn) {
+    return Mono.defer(
+        () -> {
+          Optional<Book> cached = cachedBook(isbn);
+          if (cached.isPresent()) {
+            return Mono.just(cached.get());
+          }
+          return requestBooks(isbn, headers -> {})
+              .map(
+                  response -> {
+                    Book book = withValidators(isbn, response);
+                    if (book == null) {
+                      throw new UnknownIsbnException(
+                          "Open Library returned no metadata for book with isbn '" + isbn + "'");
+                    }
+                    return book;
+                  })
+              // appending to the response cache is file I/O and must not stall the event loop
+              .publishOn(blockingScheduler)
+              .map(this::cache);
+        });
+  }
+
+  // sends the validators of the stored book along, a 304 is neither parsed nor cached. The result
+  // is empty when Open Library reports no change or doesn't know the book anymore.
+  public Optional<Book> revalidateMetadataForBook(Book stored) {
+    String isbn = stored.getIsbn();
+    return requestBooks(
+            isbn,
+            headers -> {
+              if (stored.getMetadataEtag() != null) {
+                headers.setIfNoneMatch(stored.getMetadataEtag());
+              }
+              if (stored.getMetadataLastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, stored.getMetadataLastModified());
+              }
+            })
+        .map(
+            response -> {
+              if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                return Optional.<Book>empty();
+              }
+              return Optional.ofNullable(withValidators(isbn, response));
+            })
+        .block()
+        .map(this::cache);
+  }
+
+  // resolves multiple ISBNs with a single request, ISBNs unknown to Open Library are missing in the
+  // result
+  public Map<String, Book> fetchMetadataForBooks(Collection<String> isbns) {
+    Map<String, Book> books = new HashMap<>();
+    List<String> missingIsbns = new ArrayList<>();
+
+    for (String isbn : isbns) {
+      cachedBook(isbn).ifPresentOrElse(book -> books.put(isbn, book), () -> missingIsbns.add(isbn));
+    }
+
+    if (!missingIsbns.isEmpty()) {
+      books.putAll(refreshMetadataForBooks(missingIsbns));
+    }
+    return books;
+  }
+
+  // like fetchMetadataForBooks, but bypasses the response cache and refreshes it instead
+  public Map<String, Book> refreshMetadataForBooks(Collection<String> isbns) {
+    // the validators of a multi-ISBN response don't belong to a single book and aren't kept
+    Map<String, Book> fetchedBooks =
+        requestBooks(String.join(",", isbns), headers -> {}).map(this::decode).block();
+
+    Map<String, Book> books = new HashMap<>();
+    for (String isbn : isbns) {
+      Book book = fetchedBooks.get(isbn);
+      if (book != null) {
+        books.put(isbn, cache(book));
+      }
+    }
+    return books;
+  }
+
+  // every attempt passes the circuit breaker and the limiter again, so retries don't add load
+  // while Open Library is struggling
+  private Mono<ResponseEntity<byte[]>> requestBooks(
+      String bibkeys, Consumer<HttpHeaders> conditions) {
+    return circuitBreaker.protect(
+        concurrencyLimiter.limit(
+            openLibraryWebClient
+                .get()
+                .uri(
+                    "/api/books",
+                    uriBuilder ->
+                        uriBuilder
+                            .queryParam("jscmd", "data")
+                            .queryParam("format", "json")
+                            .queryParam("bibkeys", bibkeys)
+                            .build())
+                .headers(conditions)
+                .retrieve()
+                .toEntity(byte[].class)));
+  }
+
+  private Map<String, Book> decode(ResponseEntity<byte[]> response) {
+    return response.getBody() == null ? Map.of() : bookDecoder.decodeAll(response.getBody());
+  }
+
+  private Book withValidators(String isbn, ResponseEntity<byte[]> response) {
+    Book book = decode(response).get(isbn);
+    if (book != null) {
+      HttpHeaders headers = response.getHeaders();
+      book.setMetadataEtag(headers.getETag());
+      book.setMetadataLastModified(headers.getFirst(HttpHeaders.LAST_MODIFIED));
+    }
+    return book;
+  }
+
+  // rejected requests, unknown ISBNs and client errors say nothing about the health of Open Library
+  private static boolean isUpstreamFailure(Throwable error) {
+    if (error instanceof RejectedExecutionException || error instanceof UnknownIsbnException) {
+      return false;
+    }
+    return !(error instanceof WebClientResponseException responseException
+        && responseException.getStatusCode().is4xxClientError());
+  }
+
+  private Optional<Book> cachedBook(String isbn) {
+    Optional<String> cached = responseCache.get(isbn);
+    if (cached.isPresent()) {
+      try {
+        return Optional.of(bookDecoder.decode(isbn, cached.get()));
+      } catch (RuntimeException e) {
+        LOG.warn("Ignoring unreadable cached metadata of book with isbn '{}'", isbn, e);
+      }
+    }
+    return Optional.empty();
+  }
 
-    ObjectNode result =
-        openLibraryWebClient
-            .get()
-            .uri(
-                "/api/books",
-                uriBuilder ->
-                    uriBuilder
-                        .queryParam("jscmd", "data")
-                        .queryParam("format", "json")
-                        .queryParam("bibkeys", isbn)
-                        .build())
-            .retrieve()
-            .bodyToMono(ObjectNode.class)
-            .retryWhen(Retry.fixedDelay(2, Duration.ofMillis(200)))
-            .block();
-
-    JsonNode content = result.get(isbn);
-
-    return convertToBook(isbn, content);
-  }
-
-  private Book convertToBook(String isbn, JsonNode content) {
-    Book book = new Book();
-    book.setIsbn(isbn);
-    book.setThumbnailUrl(content.get("cover").get("small").asText());
-    book.setTitle(content.get("title").asText());
-    book.setAuthor(content.get("authors").get(0).get("name").asText());
-    book.setPublisher(content.get("publishers").get(0).get("name").asText("n.A."));
-    book.setPages(content.get("number_of_pages").asLong(0));
-    book.setDescription(content.get("notes") == null ? "n.A" : content.get("notes").asText("n.A."));
-    book.setGenre(
-        content.get("subjects") == null
-            ? "n.A"
-            : content.get("subjects").get(0).get("name").asText("n.A."));
+  private Book cache(Book book) {
+    responseCache.put(book.getIsbn(), bookDecoder.encode(book));
     return book;
   }
 }
@@ -0,0 +1,218 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// streams Open Library payloads and only materializes the fields a Book needs, everything else
+// (identifiers, links, excerpts, ...) is skipped without being allocated
+class OpenLibraryBookDecoder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OpenLibraryBookDecoder.class.getName());
+
+  private final JsonFactory jsonFactory;
+
+  OpenLibraryBookDecoder(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  // decodes a response of the books API keyed by bibkey, entries that can't be converted are
+  // missing in the result
+  Map<String, Book> decodeAll(InputStream body) {
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      return decodeAll(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  Map<String, Book> decodeAll(byte[] body) {
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      return decodeAll(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // decodes a single entry as written by encode or returned by Open Library
+  Book decode(String isbn, String json) {
+    try (JsonParser parser = jsonFactory.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException(
+            "Metadata of book with isbn '" + isbn + "' is no object");
+      }
+      Book book = decodeBook(isbn, parser);
+      if (book == null) {
+        throw new IllegalArgumentException(
+            "Metadata of book with isbn '" + isbn + "' has no title");
+      }
+      return book;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // writes the fields of a book in Open Library's layout, so decode can read it back. The
+  // validators of the response the book was fetched with are kept next to them.
+  String encode(Book book) {
+    StringWriter writer = new StringWriter(256);
+    try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+      generator.writeStartObject();
+      generator.writeStringField("title", book.getTitle());
+      if (book.getThumbnailUrl() != null) {
+        generator.writeObjectFieldStart("cover");
+        generator.writeStringField("small", book.getThumbnailUrl());
+        generator.writeEndObject();
+      }
+      writeNames(generator, "authors", book.getAuthor());
+      writeNames(generator, "publishers", book.getPublisher());
+      writeNames(generator, "subjects", book.getGenre());
+      if (book.getPages() != null) {
+        generator.writeNumberField("number_of_pages", book.getPages());
+      }
+      if (book.getDescription() != null) {
+        generator.writeStringField("notes", book.getDescription());
+      }
+      if (book.getMetadataEtag() != null) {
+        generator.writeStringField("etag", book.getMetadataEtag());
+      }
+      if (book.getMetadataLastModified() != null) {
+        generator.writeStringField("last_modified", book.getMetadataLastModified());
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  private Map<String, Book> decodeAll(JsonParser parser) throws IOException {
+    Map<String, Book> books = new HashMap<>();
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return books;
+    }
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String isbn = parser.currentName();
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+      Book book = decodeBook(isbn, parser);
+      if (book == null) {
+        LOG.warn("Ignoring metadata of book with isbn '{}' without a title", isbn);
+      } else {
+        books.put(isbn, book);
+      }
+    }
+    return books;
+  }
+
+  // expects the parser on the START_OBJECT of the entry and leaves it on its END_OBJECT
+  private Book decodeBook(String isbn, JsonParser parser) throws IOException {
+    Book book = new Book();
+    book.setIsbn(isbn);
+    book.setPages(0L);
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      parser.nextToken();
+      switch (field) {
+        case "title" -> book.setTitle(text(parser));
+        case "cover" -> book.setThumbnailUrl(field(parser, "small"));
+        case "authors" -> book.setAuthor(firstName(parser));
+        case "publishers" -> book.setPublisher(firstName(parser));
+        case "subjects" -> book.setGenre(firstName(parser));
+        case "number_of_pages" -> book.setPages(
+            parser.currentToken().isScalarValue() ? parser.getValueAsLong(0) : skip(parser, 0L));
+        case "notes" -> book.setDescription(text(parser));
+        case "etag" -> book.setMetadataEtag(text(parser));
+        case "last_modified" -> book.setMetadataLastModified(text(parser));
+        default -> parser.skipChildren();
+      }
+    }
+
+    if (book.getTitle() == null) {
+      return null;
+    }
+    if (book.getPublisher() == null) {
+      book.setPublisher("n.A.");
+    }
+    if (book.getDescription() == null) {
+      book.setDescription("n.A");
+    }
+    if (book.getGenre() == null) {
+      book.setGenre("n.A");
+    }
+    return book;
+  }
+
+  private String text(JsonParser parser) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+      return parser.getValueAsString();
+    }
+    return skip(parser, null);
+  }
+
+  private String field(JsonParser parser, String name) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      return skip(parser, null);
+    }
+    String value = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      boolean wanted = name.equals(parser.currentName());
+      parser.nextToken();
+      if (wanted) {
+        value = text(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return value;
+  }
+
+  // the name of the first element of an array like "authors": [{"name": "..."}, ...]
+  private String firstName(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return skip(parser, null);
+    }
+    String name = null;
+    boolean first = true;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (first) {
+        name = field(parser, "name");
+        first = false;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return name;
+  }
+
+  private void writeNames(JsonGenerator generator, String field, String name) throws IOException {
+    if (name == null) {
+      return;
+    }
+    generator.writeArrayFieldStart(field);
+    generator.writeStartObject();
+    generator.writeStringField("name", name);
+    generator.writeEndObject();
+    generator.writeEndArray();
+  }
+
+  private <T> T skip(JsonParser parser, T fallback) throws IOException {
+    parser.skipChildren();
+    return fallback;
+  }
+}
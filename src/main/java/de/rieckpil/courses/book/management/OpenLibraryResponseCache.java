@@ -0,0 +1,437 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Book metadata per ISBN in an append-only log file, encoded in Open Library's JSON layout together
+// with the validators of the response it was fetched with. Only the offsets are kept in memory,
+// the index is rebuilt from the log on startup. Record layout:
+// [int payload length][int crc32 of payload][long stored at][int isbn length][isbn][json]
+@Component
+public class OpenLibraryResponseCache {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(OpenLibraryResponseCache.class.getName());
+
+  private static final String LOG_FILE = "open-library.log";
+  private static final int HEADER_SIZE = Integer.BYTES * 2;
+  private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+  private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+
+  private final boolean enabled;
+  private final Path directory;
+  private final long timeToLiveMillis;
+  private final Clock clock;
+  private final Executor compactionExecutor;
+
+  // guards the channel and the index, reads share the lock while appends and swapping in a
+  // compacted log don't
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private final Map<String, Entry> index = new HashMap<>();
+
+  private FileChannel channel;
+  private long liveBytes;
+  private long deadBytes;
+
+  @Autowired
+  public OpenLibraryResponseCache(
+      @Value("${clients.open-library.cache.enabled:false}") boolean enabled,
+      @Value("${clients.open-library.cache.directory:${java.io.tmpdir}/open-library-cache}")
+          Path directory,
+      @Value("${clients.open-library.cache.time-to-live:P30D}") Duration timeToLive) {
+    this(
+        enabled,
+        directory,
+        timeToLive,
+        Clock.systemUTC(),
+        Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("open-library-cache-compaction").daemon().factory()));
+  }
+
+  OpenLibraryResponseCache(
+      boolean enabled,
+      Path directory,
+      Duration timeToLive,
+      Clock clock,
+      Executor compactionExecutor) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.timeToLiveMillis = timeToLive.toMillis();
+    this.clock = clock;
+    this.compactionExecutor = compactionExecutor;
+
+    if (enabled) {
+      open();
+    }
+  }
+
+  public static OpenLibraryResponseCache disabled() {
+    return new OpenLibraryResponseCache(
+        false, null, Duration.ZERO, Clock.systemUTC(), Runnable::run);
+  }
+
+  public Optional<String> get(String isbn) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    lock.readLock().lock();
+    try {
+      Entry entry = index.get(isbn);
+      if (entry == null || isExpired(entry.storedAt())) {
+        return Optional.empty();
+      }
+      return Optional.of(read(entry).json());
+    } catch (IOException e) {
+      LOG.warn("Unable to read cached response for isbn '{}'", isbn, e);
+      return Optional.empty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void put(String isbn, String json) {
+    if (!enabled) {
+      return;
+    }
+
+    boolean compact = false;
+    lock.writeLock().lock();
+    try {
+      append(isbn, json, clock.millis());
+
+      compact =
+          deadBytes > COMPACTION_THRESHOLD
+              && deadBytes > liveBytes
+              && compacting.compareAndSet(false, true);
+    } catch (IOException e) {
+      LOG.warn("Unable to cache response for isbn '{}'", isbn, e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    if (compact) {
+      try {
+        compactionExecutor.execute(this::compact);
+      } catch (RejectedExecutionException e) {
+        compacting.set(false);
+      }
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (compactionExecutor instanceof ExecutorService executorService) {
+      executorService.shutdown();
+      try {
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void open() {
+    try {
+      Files.createDirectories(directory);
+      channel =
+          FileChannel.open(
+              directory.resolve(LOG_FILE),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      load();
+      LOG.info("Loaded {} cached Open Library responses from {}", index.size(), directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open Open Library response cache", e);
+    }
+  }
+
+  private void load() throws IOException {
+    long offset = 0;
+
+    DataInputStream input =
+        new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel.position(0)), 64 * 1024));
+
+    while (true) {
+      byte[] payload;
+      try {
+        int length = input.readInt();
+        int checksum = input.readInt();
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+          break;
+        }
+        payload = new byte[length];
+        input.readFully(payload);
+        if (checksum(payload) != checksum) {
+          break;
+        }
+      } catch (EOFException e) {
+        break;
+      }
+
+      Record record = Record.decode(payload);
+      int recordSize = HEADER_SIZE + payload.length;
+      index(record.isbn(), new Entry(offset, recordSize, record.storedAt()));
+      offset += recordSize;
+    }
+
+    // drop a partially written record from a crash, new records are appended after the last valid
+    // one
+    if (offset < channel.size()) {
+      LOG.warn("Truncating corrupt Open Library response cache at offset {}", offset);
+      channel.truncate(offset);
+    }
+    channel.position(offset);
+
+    index
+        .values()
+        .removeIf(
+            entry -> {
+              boolean expired = isExpired(entry.storedAt());
+              if (expired) {
+                liveBytes -= entry.size();
+                deadBytes += entry.size();
+              }
+              return expired;
+            });
+  }
+
+  private void append(String isbn, String json, long storedAt) throws IOException {
+    Record record = new Record(storedAt, isbn, json);
+    byte[] payload = record.encode();
+
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    buffer.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+
+    long offset = channel.size();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, offset + buffer.position());
+    }
+
+    index(isbn, new Entry(offset, buffer.limit(), storedAt));
+  }
+
+  private void index(String isbn, Entry entry) {
+    Entry previous = index.put(isbn, entry);
+    liveBytes += entry.size();
+    if (previous != null) {
+      liveBytes -= previous.size();
+      deadBytes += previous.size();
+    }
+  }
+
+  private Record read(Entry entry) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(entry.size());
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, entry.offset() + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+
+    int length = buffer.getInt();
+    int checksum = buffer.getInt();
+    byte[] payload = new byte[length];
+    buffer.get(payload);
+
+    if (checksum(payload) != checksum) {
+      throw new IOException("Checksum mismatch at offset " + entry.offset());
+    }
+    return Record.decode(payload);
+  }
+
+  // copies the live records into a new log which then replaces the current one. Records are
+  // transferred one by one without passing through the heap, and neither readers nor writers are
+  // blocked while copying. Records appended in the meantime are carried over under the write lock.
+  void compact() {
+    try {
+      FileChannel source;
+      Map<String, Entry> snapshot;
+      long snapshotEnd;
+
+      lock.readLock().lock();
+      try {
+        if (channel == null) {
+          return;
+        }
+        source = channel;
+        snapshot = new HashMap<>(index);
+        snapshotEnd = channel.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+
+      Path compacted = directory.resolve(LOG_FILE + ".compacted");
+      Map<String, Entry> relocated = new HashMap<>();
+
+      try (FileChannel target =
+          FileChannel.open(
+              compacted,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+          Entry live = entry.getValue();
+          if (!isExpired(live.storedAt())) {
+            relocated.put(
+                entry.getKey(), new Entry(target.position(), live.size(), live.storedAt()));
+            transfer(source, live.offset(), live.size(), target);
+          }
+        }
+
+        lock.writeLock().lock();
+        try {
+          if (channel != source) {
+            return;
+          }
+          long tailStart = target.position();
+          transfer(channel, snapshotEnd, channel.size() - snapshotEnd, target);
+          target.force(true);
+
+          Map<String, Entry> compactedIndex = new HashMap<>();
+          for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            Entry current = entry.getValue();
+            if (current.offset() >= snapshotEnd) {
+              compactedIndex.put(
+                  entry.getKey(),
+                  new Entry(
+                      tailStart + current.offset() - snapshotEnd,
+                      current.size(),
+                      current.storedAt()));
+            } else if (relocated.containsKey(entry.getKey())) {
+              compactedIndex.put(entry.getKey(), relocated.get(entry.getKey()));
+            }
+          }
+
+          channel.close();
+          Files.move(
+              compacted,
+              directory.resolve(LOG_FILE),
+              StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+          channel =
+              FileChannel.open(
+                  directory.resolve(LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+          index.clear();
+          index.putAll(compactedIndex);
+          liveBytes = compactedIndex.values().stream().mapToLong(Entry::size).sum();
+          deadBytes = channel.size() - liveBytes;
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+
+      LOG.debug("Compacted Open Library response cache to {} entries", relocated.size());
+    } catch (IOException e) {
+      LOG.warn("Unable to compact Open Library response cache", e);
+    } finally {
+      compacting.set(false);
+    }
+  }
+
+  private static void transfer(FileChannel source, long position, long count, FileChannel target)
+      throws IOException {
+    long end = position + count;
+    while (position < end) {
+      long transferred = source.transferTo(position, end - position, target);
+      if (transferred <= 0) {
+        throw new EOFException("Unexpected end of Open Library response cache at " + position);
+      }
+      position += transferred;
+    }
+  }
+
+  private boolean isExpired(long storedAt) {
+    return clock.millis() - storedAt > timeToLiveMillis;
+  }
+
+  private static int checksum(byte[] payload) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(payload);
+    return (int) crc32.getValue();
+  }
+
+  private record Entry(long offset, int size, long storedAt) {}
+
+  private record Record(long storedAt, String isbn, String json) {
+
+    byte[] encode() {
+      byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+      byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+      return ByteBuffer.allocate(Long.BYTES + Integer.BYTES + isbnBytes.length + jsonBytes.length)
+          .putLong(storedAt)
+          .putInt(isbnBytes.length)
+          .put(isbnBytes)
+          .put(jsonBytes)
+          .array();
+    }
+
+    static Record decode(byte[] payload) {
+      ByteBuffer buffer = ByteBuffer.wrap(payload);
+      long storedAt = buffer.getLong();
+      byte[] isbnBytes = new byte[buffer.getInt()];
+      buffer.get(isbnBytes);
+      byte[] jsonBytes = new byte[buffer.remaining()];
+      buffer.get(jsonBytes);
+      return new Record(
+          storedAt,
+          new String(isbnBytes, StandardCharsets.UTF_8),
+          new String(jsonBytes, StandardCharsets.UTF_8));
+    }
+  }
+}
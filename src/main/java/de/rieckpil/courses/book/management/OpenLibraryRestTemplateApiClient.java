@@ -2,68 +2,93 @@ package de.rieckpil.courses.book.management;
 
 import java.time.Duration;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Component
-public class OpenLibraryRestTemplateApiClient {
+public class OpenLibraryRestTemplateApiClient implements BookMetadataProvider {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(OpenLibraryRestTemplateApiClient.class.getName());
 
   private final RestTemplate restTemplate;
+  private final OpenLibraryResponseCache responseCache;
+  private final OpenLibraryBookDecoder bookDecoder;
+  private final Scheduler blockingScheduler;
 
-  public OpenLibraryRestTemplateApiClient(RestTemplateBuilder restTemplateBuilder) {
+  public OpenLibraryRestTemplateApiClient(
+      RestTemplateBuilder restTemplateBuilder,
+      OpenLibraryResponseCache responseCache,
+      ObjectMapper objectMapper,
+      Scheduler blockingScheduler,
+      @Value("${clients.open-library.base-url}") String openLibraryBaseUrl) {
+    this.responseCache = responseCache;
+    this.blockingScheduler = blockingScheduler;
+    this.bookDecoder = new OpenLibraryBookDecoder(objectMapper.getFactory());
     this.restTemplate =
         restTemplateBuilder
-            .rootUri("https://openlibrary.org")
+            .rootUri(openLibraryBaseUrl)
             .setConnectTimeout(Duration.ofSeconds(2))
             .setReadTimeout(Duration.ofSeconds(2))
             .build();
   }
 
-  public Book fetchMetadataForBook(String isbn) {
+  @Override
+  public String name() {
+    return "open-library-rest-template";
+  }
 
-    HttpHeaders headers = new HttpHeaders();
-    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-    headers.set("X-Custom-Auth", "Duke42");
-    headers.set("X-Customer-Id", "42");
+  // the blocking request occupies a thread of the blocking scheduler, never the caller's
+  @Override
+  public Mono<Book> fetchMetadataForBookAsync(String isbn) {
+    return Mono.fromCallable(() -> fetchMetadataForBook(isbn)).subscribeOn(blockingScheduler);
+  }
 
-    HttpEntity<Void> entity = new HttpEntity<>(headers);
+  public Book fetchMetadataForBook(String isbn) {
 
-    ObjectNode result =
-        restTemplate
-            .exchange(
-                "/api/books?jscmd=data&format=json&bibkeys={isbn}",
-                HttpMethod.GET,
-                entity,
-                ObjectNode.class,
-                isbn)
-            .getBody();
+    Optional<String> cached = responseCache.get(isbn);
+    if (cached.isPresent()) {
+      try {
+        return bookDecoder.decode(isbn, cached.get());
+      } catch (RuntimeException e) {
+        LOG.warn("Ignoring unreadable cached metadata of book with isbn '{}'", isbn, e);
+      }
+    }
 
-    JsonNode content = result.get(isbn);
+    // the body is decoded while it's read, it's never buffered as a whole
+    Map<String, Book> books =
+        restTemplate.execute(
+            "/api/books?jscmd=data&format=json&bibkeys={isbn}",
+            HttpMethod.GET,
+            request -> {
+              HttpHeaders headers = request.getHeaders();
+              headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+              headers.set("X-Custom-Auth", "Duke42");
+              headers.set("X-Customer-Id", "42");
+            },
+            response -> bookDecoder.decodeAll(response.getBody()),
+            isbn);
 
-    return convertToBook(isbn, content);
-  }
+    Book book = books.get(isbn);
+    if (book == null) {
+      throw new UnknownIsbnException(
+          "Open Library returned no metadata for book with isbn '" + isbn + "'");
+    }
 
-  private Book convertToBook(String isbn, JsonNode content) {
-    Book book = new Book();
-    book.setIsbn(isbn);
-    book.setThumbnailUrl(content.get("cover").get("small").asText());
-    book.setTitle(content.get("title").asText());
-    book.setAuthor(content.get("authors").get(0).get("name").asText());
-    book.setPublisher(content.get("publishers").get(0).get("name").asText("n.A."));
-    book.setPages(content.get("number_of_pages").asLong(0));
-    book.setDescription(content.get("notes") == null ? "n.A" : content.get("notes").asText("n.A."));
-    book.setGenre(
-        content.get("subjects") == null
-            ? "n.A"
-            : content.get("subjects").get(0).get("name").asText("n.A."));
+    responseCache.put(isbn, bookDecoder.encode(book));
     return book;
   }
 }
@@ -0,0 +1,49 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+// callers asking for a key that is already in flight share its outcome instead of starting the
+// call again, the key is released as soon as the call completes
+class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  Mono<V> execute(K key, Supplier<Mono<V>> call) {
+    return Mono.defer(
+        () -> {
+          CompletableFuture<V> created = new CompletableFuture<>();
+          CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+          if (existing != null) {
+            return Mono.fromFuture(existing, true);
+          }
+
+          try {
+            // subscribed independently, a cancelled caller must not abort the call for the others
+            call.get()
+                .toFuture()
+                .whenComplete(
+                    (value, error) -> {
+                      inFlight.remove(key, created);
+                      if (error != null) {
+                        created.completeExceptionally(error);
+                      } else {
+                        created.complete(value);
+                      }
+                    });
+          } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+          }
+          return Mono.fromFuture(created, true);
+        });
+  }
+
+  int inFlight() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,186 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Readers walk the trie without locking. Writers are serialized and only ever replace the immutable
+// arrays of a node, so a reader always sees a consistent (maybe slightly outdated) node.
+// Only the first MAX_DEPTH characters of a key get nodes, longer keys are kept with the node at
+// that depth and prefixes reaching past it are ranked on demand.
+class SuggestionTrie {
+
+  static final int MAX_DEPTH = 16;
+
+  private static final BookSuggestion[] NONE = new BookSuggestion[0];
+  private static final DeepKey[] NO_DEEP_KEYS = new DeepKey[0];
+
+  private static final Comparator<BookSuggestion> RANKING =
+      Comparator.comparingLong(BookSuggestion::reviews)
+          .reversed()
+          .thenComparing(BookSuggestion::value);
+
+  private final int maxSuggestions;
+  private final Node root = new Node();
+
+  SuggestionTrie(int maxSuggestions) {
+    this.maxSuggestions = maxSuggestions;
+  }
+
+  List<BookSuggestion> lookup(String prefix) {
+    Node node = root;
+    int depth = Math.min(prefix.length(), MAX_DEPTH);
+    for (int i = 0; i < depth && node != null; i++) {
+      node = node.child(prefix.charAt(i));
+    }
+    if (node == null) {
+      return List.of();
+    }
+    if (prefix.length() <= MAX_DEPTH) {
+      return Arrays.asList(node.top);
+    }
+
+    // deep keys are kept in ranking order, the first matches are the best ones
+    List<BookSuggestion> matches = new ArrayList<>(maxSuggestions);
+    for (DeepKey deepKey : node.deepKeys) {
+      if (deepKey.key().startsWith(prefix) && !matches.contains(deepKey.suggestion())) {
+        matches.add(deepKey.suggestion());
+        if (matches.size() == maxSuggestions) {
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  synchronized void put(String key, BookSuggestion suggestion) {
+    Node[] path = path(key, true);
+    Node terminal = path[path.length - 1];
+    if (key.length() > MAX_DEPTH) {
+      terminal.deepKeys = ranked(without(terminal.deepKeys, key, suggestion), key, suggestion);
+    } else {
+      terminal.terminals = ranked(without(terminal.terminals, suggestion), suggestion);
+    }
+    updateTop(path);
+  }
+
+  synchronized void remove(String key, BookSuggestion suggestion) {
+    Node[] path = path(key, false);
+    if (path == null) {
+      return;
+    }
+    Node terminal = path[path.length - 1];
+    if (key.length() > MAX_DEPTH) {
+      terminal.deepKeys = without(terminal.deepKeys, key, suggestion);
+    } else {
+      terminal.terminals = without(terminal.terminals, suggestion);
+    }
+    updateTop(path);
+  }
+
+  private Node[] path(String key, boolean create) {
+    int depth = Math.min(key.length(), MAX_DEPTH);
+    Node[] path = new Node[depth + 1];
+    path[0] = root;
+    for (int i = 0; i < depth; i++) {
+      Node next = path[i].child(key.charAt(i));
+      if (next == null) {
+        if (!create) {
+          return null;
+        }
+        next = path[i].addChild(key.charAt(i));
+      }
+      path[i + 1] = next;
+    }
+    return path;
+  }
+
+  // the top suggestions of a node are derived from its own and its children's top suggestions. A
+  // suggestion is stored once per word start, so several words of the same title or author sharing
+  // a prefix reach a node more than once.
+  private void updateTop(Node[] path) {
+    for (int i = path.length - 1; i >= 0; i--) {
+      Node node = path[i];
+      List<BookSuggestion> candidates = new ArrayList<>(Arrays.asList(node.terminals));
+      for (DeepKey deepKey : node.deepKeys) {
+        candidates.add(deepKey.suggestion());
+      }
+      for (Node child : node.edges.nodes()) {
+        candidates.addAll(Arrays.asList(child.top));
+      }
+      candidates.sort(RANKING);
+      node.top =
+          candidates.stream().distinct().limit(maxSuggestions).toArray(BookSuggestion[]::new);
+    }
+  }
+
+  private static BookSuggestion[] without(BookSuggestion[] suggestions, BookSuggestion removed) {
+    return Arrays.stream(suggestions)
+        .filter(suggestion -> !suggestion.isSameAs(removed))
+        .toArray(BookSuggestion[]::new);
+  }
+
+  private static BookSuggestion[] ranked(BookSuggestion[] suggestions, BookSuggestion added) {
+    BookSuggestion[] result = Arrays.copyOf(suggestions, suggestions.length + 1);
+    result[suggestions.length] = added;
+    Arrays.sort(result, RANKING);
+    return result;
+  }
+
+  private static DeepKey[] without(DeepKey[] deepKeys, String key, BookSuggestion removed) {
+    return Arrays.stream(deepKeys)
+        .filter(deepKey -> !deepKey.key().equals(key) || !deepKey.suggestion().isSameAs(removed))
+        .toArray(DeepKey[]::new);
+  }
+
+  private static DeepKey[] ranked(DeepKey[] deepKeys, String key, BookSuggestion added) {
+    DeepKey[] result = Arrays.copyOf(deepKeys, deepKeys.length + 1);
+    result[deepKeys.length] = new DeepKey(key, added);
+    Arrays.sort(result, Comparator.comparing(DeepKey::suggestion, RANKING));
+    return result;
+  }
+
+  private record DeepKey(String key, BookSuggestion suggestion) {}
+
+  private static final class Node {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    // labels and children are always replaced together, see Edges
+    private volatile Edges edges = new Edges(NO_LABELS, NO_CHILDREN);
+    private volatile BookSuggestion[] terminals = NONE;
+    // keys longer than MAX_DEPTH, only set on nodes at that depth
+    private volatile DeepKey[] deepKeys = NO_DEEP_KEYS;
+    private volatile BookSuggestion[] top = NONE;
+
+    Node child(char label) {
+      Edges current = edges;
+      int index = Arrays.binarySearch(current.labels(), label);
+      return index < 0 ? null : current.nodes()[index];
+    }
+
+    Node addChild(char label) {
+      Edges current = edges;
+      int insertion = -(Arrays.binarySearch(current.labels(), label) + 1);
+
+      char[] labels = new char[current.labels().length + 1];
+      Node[] nodes = new Node[current.nodes().length + 1];
+
+      System.arraycopy(current.labels(), 0, labels, 0, insertion);
+      System.arraycopy(current.nodes(), 0, nodes, 0, insertion);
+      labels[insertion] = label;
+      nodes[insertion] = new Node();
+      System.arraycopy(
+          current.labels(), insertion, labels, insertion + 1, current.labels().length - insertion);
+      System.arraycopy(
+          current.nodes(), insertion, nodes, insertion + 1, current.nodes().length - insertion);
+
+      edges = new Edges(labels, nodes);
+      return nodes[insertion];
+    }
+
+    private record Edges(char[] labels, Node[] nodes) {}
+  }
+}
@@ -0,0 +1,7 @@
+package de.rieckpil.courses.book.management;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class TooManyIsbnsException extends RuntimeException {}
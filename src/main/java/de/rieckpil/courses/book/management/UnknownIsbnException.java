@@ -0,0 +1,10 @@
+package de.rieckpil.courses.book.management;
+
+// Open Library answered, but doesn't know the ISBN. Says nothing about the health of Open Library,
+// so it's neither retried right away nor counted by the circuit breaker.
+public class UnknownIsbnException extends RuntimeException {
+
+  public UnknownIsbnException(String message) {
+    super(message);
+  }
+}
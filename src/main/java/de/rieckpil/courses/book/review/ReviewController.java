@@ -1,13 +1,16 @@
 package de.rieckpil.courses.book.review;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.rieckpil.courses.book.ContentVersions;
+import de.rieckpil.courses.book.JsonResponseCache;
+import de.rieckpil.courses.book.PreSerializedJson;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -17,21 +20,36 @@ import org.springframework.web.util.UriComponentsBuilder;
 public class ReviewController {
 
   private final ReviewService reviewService;
+  private final ContentVersions contentVersions;
+  private final JsonResponseCache jsonResponseCache;
 
-  public ReviewController(ReviewService reviewService) {
+  public ReviewController(
+      ReviewService reviewService,
+      ContentVersions contentVersions,
+      JsonResponseCache jsonResponseCache) {
     this.reviewService = reviewService;
+    this.contentVersions = contentVersions;
+    this.jsonResponseCache = jsonResponseCache;
   }
 
   @GetMapping("/reviews")
-  public ArrayNode getAllReviews(
+  public ResponseEntity<PreSerializedJson> getAllReviews(
       @RequestParam(name = "size", defaultValue = "20") Integer size,
-      @RequestParam(name = "orderBy", defaultValue = "none") String orderBy) {
-    return reviewService.getAllReviews(size, orderBy);
+      @RequestParam(name = "orderBy", defaultValue = "none") String orderBy,
+      WebRequest webRequest) {
+    String version = contentVersions.reviewsCacheVersion();
+    return jsonResponseCache.respond(
+        "reviews?size=" + size + "&orderBy=" + orderBy,
+        version,
+        () -> reviewService.getAllReviews(size, orderBy),
+        webRequest);
   }
 
   @GetMapping("/reviews/statistics")
-  public ArrayNode getReviewStatistics() {
-    return reviewService.getReviewStatistics();
+  public ResponseEntity<PreSerializedJson> getReviewStatistics(WebRequest webRequest) {
+    String version = contentVersions.reviewsCacheVersion();
+    return jsonResponseCache.respond(
+        "reviews/statistics", version, reviewService::getReviewStatistics, webRequest);
   }
 
   @PostMapping("/{isbn}/reviews")
@@ -23,6 +23,8 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
   List<Review> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
+  long countByBookIsbn(String isbn);
+
   void deleteByIdAndBookIsbn(Long reviewId, String isbn);
 
   Optional<Review> findByIdAndBookIsbn(Long reviewId, String isbn);
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import de.rieckpil.courses.book.management.Book;
 import de.rieckpil.courses.book.management.BookRepository;
 import de.rieckpil.courses.book.management.UserService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,17 +23,20 @@ public class ReviewService {
   private final UserService userService;
   private final BookRepository bookRepository;
   private final ReviewRepository reviewRepository;
+  private final ApplicationEventPublisher applicationEventPublisher;
   private final ObjectMapper objectMapper = new ObjectMapper();
 
   public ReviewService(
       ReviewVerifier reviewVerifier,
       UserService userService,
       BookRepository bookRepository,
-      ReviewRepository reviewRepository) {
+      ReviewRepository reviewRepository,
+      ApplicationEventPublisher applicationEventPublisher) {
     this.reviewVerifier = reviewVerifier;
     this.userService = userService;
     this.bookRepository = bookRepository;
     this.reviewRepository = reviewRepository;
+    this.applicationEventPublisher = applicationEventPublisher;
   }
 
   public Long createBookReview(
@@ -55,6 +59,7 @@ public class ReviewService {
       review.setCreatedAt(LocalDateTime.now());
 
       review = reviewRepository.save(review);
+      applicationEventPublisher.publishEvent(new ReviewChangedEvent(isbn, review.getId()));
 
       return review.getId();
     } else {
@@ -115,6 +120,7 @@ public class ReviewService {
 
   public void deleteReview(String isbn, Long reviewId) {
     this.reviewRepository.deleteByIdAndBookIsbn(reviewId, isbn);
+    this.applicationEventPublisher.publishEvent(new ReviewChangedEvent(isbn, reviewId));
   }
 
   public ObjectNode getReviewById(String isbn, Long reviewId) {
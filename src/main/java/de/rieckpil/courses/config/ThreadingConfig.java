@@ -0,0 +1,42 @@
+package de.rieckpil.courses.config;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Tomcat and Spring's task executors follow spring.threads.virtual.enabled on their own. The SQS
+// listener container only accepts its own platform threads, so the listeners hand their blocking
+// work over to the scheduler defined here.
+@Configuration
+public class ThreadingConfig {
+
+  @Bean
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public Scheduler boundedElasticScheduler() {
+    return Schedulers.boundedElastic();
+  }
+
+  @Bean(destroyMethod = "dispose")
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public Scheduler virtualThreadScheduler() {
+    return Schedulers.fromExecutorService(
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("blocking-", 0).factory()),
+        "virtual-threads");
+  }
+
+  @Bean
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public VirtualThreadPinningReporter virtualThreadPinningReporter(
+      MeterRegistry meterRegistry,
+      @Value("${virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+    return new VirtualThreadPinningReporter(meterRegistry, threshold);
+  }
+}
@@ -0,0 +1,82 @@
+package de.rieckpil.courses.config;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+// a virtual thread blocking inside synchronized (or native code) pins its carrier thread, which
+// silently reduces the parallelism down to the number of carriers
+public class VirtualThreadPinningReporter implements SmartLifecycle {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(VirtualThreadPinningReporter.class.getName());
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final int REPORTED_FRAMES = 8;
+
+  private final Counter pinnedThreads;
+  private final Duration threshold;
+
+  private RecordingStream recordingStream;
+
+  public VirtualThreadPinningReporter(MeterRegistry meterRegistry, Duration threshold) {
+    this.pinnedThreads = meterRegistry.counter("jvm.threads.virtual.pinned");
+    this.threshold = threshold;
+  }
+
+  @Override
+  public synchronized void start() {
+    recordingStream = new RecordingStream();
+    recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+    recordingStream.onEvent(PINNED_EVENT, this::report);
+    recordingStream.startAsync();
+    LOG.info("Reporting virtual threads pinned for more than {}", threshold);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (recordingStream != null) {
+      recordingStream.close();
+      recordingStream = null;
+    }
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return recordingStream != null;
+  }
+
+  private void report(RecordedEvent event) {
+    pinnedThreads.increment();
+
+    String stackTrace =
+        event.getStackTrace() == null
+            ? "n.A."
+            : event.getStackTrace().getFrames().stream()
+                .limit(REPORTED_FRAMES)
+                .map(VirtualThreadPinningReporter::format)
+                .collect(Collectors.joining("\n\tat ", "\n\tat ", ""));
+
+    LOG.warn(
+        "Virtual thread '{}' pinned its carrier for {} ms{}",
+        event.getThread() == null ? "n.A." : event.getThread().getJavaName(),
+        event.getDuration().toMillis(),
+        stackTrace);
+  }
+
+  private static String format(RecordedFrame frame) {
+    return frame.getMethod().getType().getName()
+        + "."
+        + frame.getMethod().getName()
+        + ":"
+        + frame.getLineNumber();
+  }
+}
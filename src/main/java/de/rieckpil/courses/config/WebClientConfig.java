@@ -1,5 +1,7 @@
 package de.rieckpil.courses.config;
 
+import java.time.Duration;
+
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
@@ -7,29 +9,83 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
 public class WebClientConfig {
 
+  // pool metrics are published as reactor.netty.connection.provider.* through the global
+  // Micrometer registry, which Spring Boot registers its registries with
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider openLibraryConnectionProvider(
+      @Value("${clients.open-library.pool.max-connections:256}") int maxConnections,
+      @Value("${clients.open-library.pool.pending-acquire-max-count:1024}")
+          int pendingAcquireMaxCount,
+      @Value("${clients.open-library.pool.pending-acquire-timeout:PT5S}")
+          Duration pendingAcquireTimeout,
+      @Value("${clients.open-library.pool.max-idle-time:PT20S}") Duration maxIdleTime,
+      @Value("${clients.open-library.pool.max-life-time:PT5M}") Duration maxLifeTime,
+      @Value("${clients.open-library.pool.evict-in-background:PT30S}") Duration evictInBackground) {
+    return ConnectionProvider.builder("open-library")
+        .maxConnections(maxConnections)
+        .pendingAcquireMaxCount(pendingAcquireMaxCount)
+        .pendingAcquireTimeout(pendingAcquireTimeout)
+        .maxIdleTime(maxIdleTime)
+        .maxLifeTime(maxLifeTime)
+        .evictInBackground(evictInBackground)
+        .metrics(true)
+        .build();
+  }
+
   @Bean
   public WebClient openLibraryWebClient(
       @Value("${clients.open-library.base-url}") String openLibraryBaseUrl,
+      @Value("${clients.open-library.compression:true}") boolean compression,
+      @Value("${clients.open-library.http2:false}") boolean http2,
+      ConnectionProvider openLibraryConnectionProvider,
       WebClient.Builder webClientBuilder) {
 
     HttpClient httpClient =
-        HttpClient.create()
+        HttpClient.create(openLibraryConnectionProvider)
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 2_000)
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            // sends Accept-Encoding: gzip, deflate and inflates the response transparently
+            .compress(compression)
             .doOnConnected(
                 connection ->
                     connection
                         .addHandlerLast(new ReadTimeoutHandler(2))
                         .addHandlerLast(new WriteTimeoutHandler(2)));
 
+    if (http2 && openLibraryBaseUrl.startsWith("https")) {
+      // negotiated via ALPN, servers without HTTP/2 support fall back to HTTP/1.1
+      httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+    }
+
     return webClientBuilder
         .baseUrl(openLibraryBaseUrl)
         .clientConnector(new ReactorClientHttpConnector(httpClient))
         .build();
   }
+
+  // covers.openlibrary.org redirects to the host actually serving the image
+  @Bean
+  public WebClient openLibraryCoverWebClient(
+      @Value("${covers.max-size:1MB}") DataSize maxSize, WebClient.Builder webClientBuilder) {
+
+    HttpClient httpClient =
+        HttpClient.create()
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 2_000)
+            .responseTimeout(Duration.ofSeconds(10))
+            .followRedirect(true);
+
+    return webClientBuilder
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxSize.toBytes()))
+        .build();
+  }
 }
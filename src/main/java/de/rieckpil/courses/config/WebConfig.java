@@ -1,6 +1,10 @@
 package de.rieckpil.courses.config;
 
+import java.util.List;
+
+import de.rieckpil.courses.book.PreSerializedJsonHttpMessageConverter;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -14,4 +18,9 @@ public class WebConfig implements WebMvcConfigurer {
         .allowedOrigins("http://localhost:3000")
         .allowedMethods("HEAD", "GET", "PUT", "POST", "DELETE", "PATCH");
   }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(0, new PreSerializedJsonHttpMessageConverter());
+  }
 }
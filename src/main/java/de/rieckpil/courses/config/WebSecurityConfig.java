@@ -24,12 +24,24 @@ public class WebSecurityConfig {
                 authorize
                     .requestMatchers(HttpMethod.GET, "/api/books")
                     .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/books/search")
+                    .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/books/suggest")
+                    .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/books/reviews")
                     .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/books/{isbn}")
+                    .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/books/{isbn}/cover")
+                    .permitAll()
+                    .requestMatchers(HttpMethod.POST, "/api/books/lookup")
+                    .permitAll()
                     .requestMatchers("/api/**")
                     .authenticated()
                     .requestMatchers(EndpointRequest.to(HealthEndpoint.class))
                     .permitAll()
+                    .requestMatchers(EndpointRequest.toAnyEndpoint())
+                    .authenticated()
                     .anyRequest()
                     .permitAll())
         .sessionManagement(
@@ -0,0 +1,9 @@
+ALTER TABLE books ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (
+  setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+  setweight(to_tsvector('english', coalesce(author, '')), 'B') ||
+  setweight(to_tsvector('english', coalesce(genre, '')), 'C') ||
+  setweight(to_tsvector('english', coalesce(publisher, '')), 'C') ||
+  setweight(to_tsvector('english', coalesce(description, '')), 'D')
+) STORED;
+
+CREATE INDEX books_search_vector_idx ON books USING GIN (search_vector);
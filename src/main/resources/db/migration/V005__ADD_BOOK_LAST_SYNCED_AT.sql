@@ -0,0 +1,3 @@
+-- existing books count as never synchronized, new ones as synchronized when inserted
+ALTER TABLE books ADD COLUMN last_synced_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT TIMESTAMP WITH TIME ZONE 'epoch';
+ALTER TABLE books ALTER COLUMN last_synced_at SET DEFAULT now();
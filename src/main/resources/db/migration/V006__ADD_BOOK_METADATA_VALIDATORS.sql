@@ -0,0 +1,3 @@
+-- ETag and Last-Modified of the Open Library response the metadata was taken from
+ALTER TABLE books ADD COLUMN metadata_etag VARCHAR(255);
+ALTER TABLE books ADD COLUMN metadata_last_modified VARCHAR(64);
@@ -0,0 +1,2 @@
+-- the Open Library URL of a cover stored locally, nodes without a local copy redirect to it
+ALTER TABLE books ADD COLUMN cover_source_url VARCHAR(255);
@@ -15,6 +15,7 @@ import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import de.rieckpil.courses.book.management.BookCatalogCache;
 import de.rieckpil.courses.book.management.BookRepository;
 import de.rieckpil.courses.book.review.ReviewRepository;
 import de.rieckpil.courses.initializer.RSAKeyGenerator;
@@ -79,6 +80,8 @@ public abstract class AbstractIntegrationTest {
 
   @Autowired private BookRepository bookRepository;
 
+  @Autowired private BookCatalogCache bookCatalogCache;
+
   @Autowired private RSAKeyGenerator rsaKeyGenerator;
 
   @Autowired private OAuth2Stubs oAuth2Stubs;
@@ -96,12 +99,14 @@ public abstract class AbstractIntegrationTest {
   void init() {
     this.reviewRepository.deleteAll();
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
   }
 
   @AfterEach
   void cleanUp() {
     this.reviewRepository.deleteAll();
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
   }
 
   protected String getSignedJWT(String username, String email) throws JOSEException {
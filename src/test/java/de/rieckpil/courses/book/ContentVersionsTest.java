@@ -0,0 +1,45 @@
+package de.rieckpil.courses.book;
+
+import java.time.Duration;
+
+import de.rieckpil.courses.book.management.Book;
+import de.rieckpil.courses.book.management.BookStoredEvent;
+import de.rieckpil.courses.book.review.ReviewChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ContentVersionsTest {
+
+  private final ContentVersions cut = new ContentVersions(Duration.ofHours(1));
+
+  @Test
+  void shouldProvideStableVersionWhileNothingChanges() {
+    assertEquals(cut.booksCacheVersion(), cut.booksCacheVersion());
+  }
+
+  @Test
+  void shouldChangeBookAndReviewVersionWhenBookIsStored() {
+    String booksVersion = cut.booksCacheVersion();
+    String reviewsVersion = cut.reviewsCacheVersion();
+
+    cut.onBookStored(new BookStoredEvent(new Book()));
+
+    assertEquals(1, cut.booksVersion());
+    assertNotEquals(booksVersion, cut.booksCacheVersion());
+    assertNotEquals(reviewsVersion, cut.reviewsCacheVersion());
+  }
+
+  @Test
+  void shouldOnlyChangeReviewVersionWhenReviewChanges() {
+    String booksVersion = cut.booksCacheVersion();
+    String reviewsVersion = cut.reviewsCacheVersion();
+
+    cut.onReviewChanged(new ReviewChangedEvent("42", 1L));
+
+    assertEquals(1, cut.reviewsVersion());
+    assertEquals(booksVersion, cut.booksCacheVersion());
+    assertNotEquals(reviewsVersion, cut.reviewsCacheVersion());
+  }
+}
@@ -0,0 +1,161 @@
+package de.rieckpil.courses.book;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonResponseCacheTest {
+
+  private final JsonResponseCache cut = new JsonResponseCache(new ObjectMapper());
+
+  @Test
+  void shouldSerializeOnlyOncePerVersion() {
+    AtomicInteger invocations = new AtomicInteger();
+
+    ResponseEntity<PreSerializedJson> first =
+        cut.respond("books", "v1", () -> List.of(invocations.incrementAndGet()), request(null));
+    ResponseEntity<PreSerializedJson> second =
+        cut.respond("books", "v1", () -> List.of(invocations.incrementAndGet()), request(null));
+
+    assertEquals(1, invocations.get());
+    assertEquals("[1]", new String(first.getBody().content(), StandardCharsets.UTF_8));
+    assertArrayEquals(first.getBody().content(), second.getBody().content());
+  }
+
+  @Test
+  void shouldSerializeAgainWhenVersionChanges() {
+    AtomicInteger invocations = new AtomicInteger();
+
+    cut.respond("books", "v1", () -> List.of(invocations.incrementAndGet()), request(null));
+    ResponseEntity<PreSerializedJson> result =
+        cut.respond("books", "v2", () -> List.of(invocations.incrementAndGet()), request(null));
+
+    assertEquals(2, invocations.get());
+    assertEquals("[2]", new String(result.getBody().content(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void shouldServeGzippedContentWhenClientAcceptsIt() throws IOException {
+    String largeValue = "a".repeat(JsonResponseCache.MIN_GZIP_SIZE);
+
+    ResponseEntity<PreSerializedJson> result =
+        cut.respond("books", "v1", () -> List.of(largeValue), request("gzip, deflate"));
+
+    assertEquals("gzip", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, result.getHeaders().getFirst(HttpHeaders.VARY));
+
+    try (GZIPInputStream gzip =
+        new GZIPInputStream(new ByteArrayInputStream(result.getBody().content()))) {
+      assertEquals(
+          "[\"" + largeValue + "\"]", new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void shouldNotCompressSmallResponses() {
+    ResponseEntity<PreSerializedJson> result =
+        cut.respond("books", "v1", () -> List.of(), request("gzip"));
+
+    assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals("[]", new String(result.getBody().content(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void shouldNotServeGzipWhenClientRefusesIt() {
+    String largeValue = "a".repeat(JsonResponseCache.MIN_GZIP_SIZE);
+
+    ResponseEntity<PreSerializedJson> result =
+        cut.respond("books", "\"v1\"", () -> List.of(largeValue), request("gzip;q=0, identity"));
+
+    assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, result.getHeaders().getFirst(HttpHeaders.VARY));
+  }
+
+  @Test
+  void shouldParseAcceptEncodingWithQualityValues() {
+    assertTrue(JsonResponseCache.acceptsGzip("gzip, deflate, br"));
+    assertTrue(JsonResponseCache.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+    assertTrue(JsonResponseCache.acceptsGzip("*"));
+    assertFalse(JsonResponseCache.acceptsGzip("gzip;q=0"));
+    assertFalse(JsonResponseCache.acceptsGzip("*;q=0.5, gzip;q=0"));
+    assertFalse(JsonResponseCache.acceptsGzip("identity"));
+    assertFalse(JsonResponseCache.acceptsGzip(null));
+  }
+
+  @Test
+  void shouldUseDistinctETagForGzipRepresentation() {
+    String largeValue = "a".repeat(JsonResponseCache.MIN_GZIP_SIZE);
+    MockHttpServletResponse identityResponse = new MockHttpServletResponse();
+    MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+
+    cut.respond("books", "v1", () -> List.of(largeValue), request(null, identityResponse));
+    cut.respond("books", "v1", () -> List.of(largeValue), request("gzip", gzipResponse));
+
+    String eTag = identityResponse.getHeader(HttpHeaders.ETAG);
+    assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+    assertEquals(JsonResponseCache.gzipETag(eTag), gzipResponse.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  void shouldAnswerMatchingGzipETagWithNotModified() {
+    String largeValue = "a".repeat(JsonResponseCache.MIN_GZIP_SIZE);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    cut.respond("books", "v1", () -> List.of(largeValue), request("gzip", response));
+
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+    request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+    request.addHeader(HttpHeaders.IF_NONE_MATCH, response.getHeader(HttpHeaders.ETAG));
+
+    ResponseEntity<PreSerializedJson> result =
+        cut.respond(
+            "books",
+            "v1",
+            () -> List.of(largeValue),
+            new ServletWebRequest(request, new MockHttpServletResponse()));
+
+    assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, result.getHeaders().getFirst(HttpHeaders.VARY));
+  }
+
+  @Test
+  void shouldHandOutSameETagForSameContentAcrossNodes() {
+    MockHttpServletResponse firstNode = new MockHttpServletResponse();
+    MockHttpServletResponse secondNode = new MockHttpServletResponse();
+
+    cut.respond("books", "books-3-42", () -> List.of("a"), request(null, firstNode));
+    new JsonResponseCache(new ObjectMapper())
+        .respond("books", "books-0-42", () -> List.of("a"), request(null, secondNode));
+
+    assertEquals(firstNode.getHeader(HttpHeaders.ETAG), secondNode.getHeader(HttpHeaders.ETAG));
+  }
+
+  private ServletWebRequest request(String acceptEncoding) {
+    return request(acceptEncoding, new MockHttpServletResponse());
+  }
+
+  private ServletWebRequest request(String acceptEncoding, MockHttpServletResponse response) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+    if (acceptEncoding != null) {
+      request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+    }
+    return new ServletWebRequest(request, response);
+  }
+}
@@ -0,0 +1,163 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookCatalogCacheTest {
+
+  @Mock private BookRepository bookRepository;
+
+  private MeterRegistry meterRegistry;
+
+  private BookCatalogCache cut;
+
+  @BeforeEach
+  void setup() {
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.cut = new BookCatalogCache(bookRepository, meterRegistry, Duration.ofMinutes(5));
+  }
+
+  @Test
+  void shouldLoadCatalogOnlyOnceWhenRequestedRepeatedly() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+
+    List<Book> first = cut.getAllBooks();
+    List<Book> second = cut.getAllBooks();
+
+    assertSame(first, second);
+    verify(bookRepository, times(1)).findAll();
+
+    assertEquals(1, requests("hit"));
+    assertEquals(1, requests("miss"));
+    assertEquals(1, meterRegistry.counter("book.catalog.cache.rebuilds").count());
+  }
+
+  @Test
+  void shouldServeImmutableSnapshot() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+
+    List<Book> result = cut.getAllBooks();
+
+    assertThrows(UnsupportedOperationException.class, () -> result.add(new Book()));
+  }
+
+  @Test
+  void shouldPatchSnapshotWhenBookIsStored() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+
+    cut.getAllBooks();
+    cut.onBookStored(new BookStoredEvent(createBook(2L, "84")));
+
+    List<Book> result = cut.getAllBooks();
+
+    assertEquals(2, result.size());
+    assertEquals("84", result.get(1).getIsbn());
+    verify(bookRepository, times(1)).findAll();
+  }
+
+  @Test
+  void shouldReplaceBookWithSameIsbnWhenStoredAgain() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+
+    cut.getAllBooks();
+
+    Book updated = createBook(1L, "42");
+    updated.setTitle("Updated");
+    cut.onBookStored(new BookStoredEvent(updated));
+
+    List<Book> result = cut.getAllBooks();
+
+    assertEquals(1, result.size());
+    assertEquals("Updated", result.get(0).getTitle());
+  }
+
+  @Test
+  void shouldMergeBooksStoredSinceLastReadIntoSnapshot() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+
+    cut.getAllBooks();
+
+    Book first = createBook(2L, "84");
+    Book updated = createBook(2L, "84");
+    updated.setTitle("Updated");
+    cut.onBookStored(new BookStoredEvent(first));
+    cut.onBookStored(new BookStoredEvent(createBook(3L, "21")));
+    cut.onBookStored(new BookStoredEvent(updated));
+
+    List<Book> result = cut.getAllBooks();
+
+    assertEquals(List.of("42", "84", "21"), result.stream().map(Book::getIsbn).toList());
+    assertEquals("Updated", result.get(1).getTitle());
+    assertEquals(Optional.of(Map.of("21", result.get(2))), cut.findByIsbns(List.of("21")));
+    verify(bookRepository, times(1)).findAll();
+  }
+
+  @Test
+  void shouldReloadCatalogWhenInvalidated() {
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>());
+
+    cut.getAllBooks();
+    cut.invalidate();
+    cut.getAllBooks();
+
+    verify(bookRepository, times(2)).findAll();
+  }
+
+  @Test
+  void shouldReloadCatalogWhenSnapshotIsExpired() {
+    this.cut = new BookCatalogCache(bookRepository, meterRegistry, Duration.ZERO);
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>());
+
+    cut.getAllBooks();
+    cut.getAllBooks();
+
+    verify(bookRepository, times(2)).findAll();
+  }
+
+  @Test
+  void shouldOnlyLookupIsbnsWhenCatalogIsWarm() {
+    assertTrue(cut.findByIsbns(Set.of("42")).isEmpty());
+
+    when(bookRepository.findAll()).thenReturn(new ArrayList<>(List.of(createBook(1L, "42"))));
+    cut.getAllBooks();
+    cut.onBookStored(new BookStoredEvent(createBook(2L, "43")));
+
+    Map<String, Book> result = cut.findByIsbns(Set.of("42", "43", "44")).orElseThrow();
+
+    assertEquals(Set.of("42", "43"), result.keySet());
+    verify(bookRepository, times(1)).findAll();
+  }
+
+  private double requests(String result) {
+    return meterRegistry.counter("book.catalog.cache.requests", "result", result).count();
+  }
+
+  private Book createBook(Long id, String isbn) {
+    Book book = new Book();
+    book.setId(id);
+    book.setIsbn(isbn);
+    book.setTitle("Java " + id);
+    return book;
+  }
+}
@@ -1,8 +1,15 @@
 package de.rieckpil.courses.book.management;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+import de.rieckpil.courses.book.ContentVersions;
+import de.rieckpil.courses.book.JsonResponseCache;
 import de.rieckpil.courses.config.WebSecurityConfig;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -14,21 +21,39 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BookController.class)
 // see
 // https://github.com/spring-projects/spring-boot/wiki/Spring-Boot-2.7-Release-Notes#migrating-from-websecurityconfigureradapter-to-securityfilterchain
-@Import(WebSecurityConfig.class)
+@Import({WebSecurityConfig.class, ContentVersions.class, JsonResponseCache.class})
 class BookControllerTest {
 
   @MockBean private BookManagementService bookManagementService;
 
+  @MockBean private BookCoverStore bookCoverStore;
+
   @Autowired private MockMvc mockMvc;
 
+  @Autowired private JsonResponseCache jsonResponseCache;
+
+  @BeforeEach
+  void clearResponseCache() {
+    this.jsonResponseCache.clear();
+  }
+
   @Test
   void shouldGetEmptyArrayWhenNoBooksExists() throws Exception {
     MvcResult mvcResult =
@@ -90,6 +115,284 @@ class BookControllerTest {
         .andExpect(jsonPath("$[1].title", is("Java 15")));
   }
 
+  @Test
+  void shouldReturnNotModifiedWithoutLoadingBooksWhenETagMatches() throws Exception {
+    String eTag =
+        this.mockMvc
+            .perform(get("/api/books").header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON))
+            .andExpect(status().is(200))
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+    this.mockMvc
+        .perform(
+            get("/api/books")
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isNotModified());
+
+    verify(bookManagementService, times(1)).getAllBooks();
+  }
+
+  @Test
+  void shouldReturnPageWithCursorWhenSizeIsRequested() throws Exception {
+
+    BookSummary book =
+        new BookSummary(
+            1L,
+            "42",
+            "Java 14",
+            "Mike",
+            "Software Engineering",
+            "ftp://localhost:42",
+            "Oracle",
+            200L);
+
+    when(bookManagementService.getBooks(null, 1)).thenReturn(new BookPage(List.of(book), 1L));
+
+    this.mockMvc
+        .perform(get("/api/books").param("size", "1"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$.books.size()", is(1)))
+        .andExpect(jsonPath("$.books[0].isbn", is("42")))
+        .andExpect(jsonPath("$.books[0].description").doesNotExist())
+        .andExpect(jsonPath("$.next", is(1)));
+
+    when(bookManagementService.getBooks(1L, 1)).thenReturn(new BookPage(List.of(), null));
+
+    this.mockMvc
+        .perform(get("/api/books").param("size", "1").param("cursor", "1"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$.books.size()", is(0)))
+        .andExpect(jsonPath("$.next", nullValue()));
+  }
+
+  @Test
+  void shouldSearchBooksWithoutAuthentication() throws Exception {
+    Book book =
+        createBook(
+            1L,
+            "42",
+            "Java 14",
+            "Mike",
+            "Good book",
+            "Software Engineering",
+            200L,
+            "Oracle",
+            "ftp://localhost:42");
+
+    when(bookManagementService.searchBooks("java", 0, 20))
+        .thenReturn(new BookSearchResult(List.of(book), 0, 20, 1));
+
+    this.mockMvc
+        .perform(get("/api/books/search").param("q", "java"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$.total", is(1)))
+        .andExpect(jsonPath("$.books[0].isbn", is("42")));
+  }
+
+  @Test
+  void shouldStreamBooksAsNdjsonWhenRequested() throws Exception {
+
+    Book bookOne =
+        createBook(
+            1L,
+            "42",
+            "Java 14",
+            "Mike",
+            "Good book",
+            "Software Engineering",
+            200L,
+            "Oracle",
+            "ftp://localhost:42");
+
+    Book bookTwo =
+        createBook(
+            2L,
+            "84",
+            "Java 15",
+            "Duke",
+            "Good book",
+            "Software Engineering",
+            200L,
+            "Oracle",
+            "ftp://localhost:42");
+
+    doAnswer(
+            invocation -> {
+              Consumer<Book> consumer = invocation.getArgument(0);
+              consumer.accept(bookOne);
+              consumer.accept(bookTwo);
+              return null;
+            })
+        .when(bookManagementService)
+        .streamAllBooks(any());
+
+    MvcResult mvcResult =
+        this.mockMvc
+            .perform(get("/api/books").header(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON))
+            .andExpect(status().is(200))
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn();
+
+    String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].startsWith("{") && lines[0].contains("\"isbn\":\"42\""));
+    assertTrue(lines[1].startsWith("{") && lines[1].contains("\"isbn\":\"84\""));
+  }
+
+  @Test
+  void shouldReturnFullBookByIsbnWithoutAuthentication() throws Exception {
+    when(bookManagementService.getBook("42"))
+        .thenReturn(
+            createBook(
+                1L,
+                "42",
+                "Java 14",
+                "Mike",
+                "Good book",
+                "Software Engineering",
+                200L,
+                "Oracle",
+                "ftp://localhost:42"));
+
+    this.mockMvc
+        .perform(get("/api/books/42"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$.isbn", is("42")))
+        .andExpect(jsonPath("$.description", is("Good book")));
+  }
+
+  @Test
+  void shouldLookupCommaSeparatedIsbnsWithoutAuthentication() throws Exception {
+    when(bookManagementService.lookupBooks(List.of("42", "43")))
+        .thenReturn(
+            List.of(
+                BookLookupResult.of(
+                    "42",
+                    createBook(
+                        1L,
+                        "42",
+                        "Java 14",
+                        "Mike",
+                        "Good book",
+                        "Software Engineering",
+                        200L,
+                        "Oracle",
+                        "ftp://localhost:42")),
+                BookLookupResult.of("43", null)));
+
+    this.mockMvc
+        .perform(get("/api/books").param("isbn", "42,43"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$.size()", is(2)))
+        .andExpect(jsonPath("$[0].found", is(true)))
+        .andExpect(jsonPath("$[0].book.title", is("Java 14")))
+        .andExpect(jsonPath("$[1].isbn", is("43")))
+        .andExpect(jsonPath("$[1].found", is(false)));
+  }
+
+  @Test
+  void shouldLookupIsbnsFromRequestBody() throws Exception {
+    when(bookManagementService.lookupBooks(List.of("42")))
+        .thenReturn(List.of(BookLookupResult.of("42", null)));
+
+    this.mockMvc
+        .perform(
+            post("/api/books/lookup").contentType(MediaType.APPLICATION_JSON).content("[\"42\"]"))
+        .andExpect(status().is(200))
+        .andExpect(jsonPath("$[0].found", is(false)));
+  }
+
+  @Test
+  void shouldRejectTooManyIsbns() throws Exception {
+    when(bookManagementService.lookupBooks(List.of("42"))).thenThrow(new TooManyIsbnsException());
+
+    this.mockMvc.perform(get("/api/books").param("isbn", "42")).andExpect(status().is(400));
+  }
+
+  @Test
+  void shouldReturnNotFoundForUnknownIsbn() throws Exception {
+    when(bookManagementService.getBook("42")).thenThrow(new BookNotFoundException());
+
+    this.mockMvc.perform(get("/api/books/42")).andExpect(status().is(404));
+  }
+
+  @Test
+  void shouldServeStoredCoverWithoutAuthentication() throws Exception {
+    BookCoverStore.Cover cover = new BookCoverStore.Cover("abc", "image/jpeg", 0, 42, 3);
+    when(bookCoverStore.find("42")).thenReturn(Optional.of(cover));
+    doAnswer(
+            invocation -> {
+              WritableByteChannel target = invocation.getArgument(1);
+              return target.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            })
+        .when(bookCoverStore)
+        .transferTo(any(), any());
+
+    this.mockMvc
+        .perform(get("/api/books/42/cover").param("v", "abc"))
+        .andExpect(status().is(200))
+        .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+        .andExpect(content().bytes(new byte[] {1, 2, 3}))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+        .andExpect(
+            header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"));
+  }
+
+  @Test
+  void shouldReturnNotModifiedForKnownCover() throws Exception {
+    BookCoverStore.Cover cover = new BookCoverStore.Cover("abc", "image/jpeg", 0, 42, 3);
+    when(bookCoverStore.find("42")).thenReturn(Optional.of(cover));
+
+    this.mockMvc
+        .perform(get("/api/books/42/cover").header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+        .andExpect(status().isNotModified());
+
+    verify(bookCoverStore, never()).transferTo(any(), any());
+  }
+
+  @Test
+  void shouldRedirectOutdatedCoverVersionToCurrentCover() throws Exception {
+    BookCoverStore.Cover cover = new BookCoverStore.Cover("abc", "image/jpeg", 0, 42, 3);
+    when(bookCoverStore.find("42")).thenReturn(Optional.of(cover));
+
+    this.mockMvc
+        .perform(get("/api/books/42/cover").param("v", "outdated"))
+        .andExpect(status().isFound())
+        .andExpect(redirectedUrl("/api/books/42/cover?v=abc"));
+
+    verify(bookCoverStore, never()).transferTo(any(), any());
+  }
+
+  @Test
+  void shouldRedirectToCoverSourceWhenCoverIsNotStoredOnThisNode() throws Exception {
+    Book book =
+        createBook(1L, "42", "Java 14", "Mike", "Good book", "Software", 200L, "Oracle", "");
+    book.setThumbnailUrl(BookCoverStore.coverUrl("42", "abc"));
+    book.setCoverSourceUrl("https://covers.openlibrary.org/b/id/388761-S.jpg");
+    when(bookCoverStore.find("42")).thenReturn(Optional.empty());
+    when(bookManagementService.getBook("42")).thenReturn(book);
+
+    this.mockMvc
+        .perform(get("/api/books/42/cover").param("v", "abc"))
+        .andExpect(status().isFound())
+        .andExpect(redirectedUrl("https://covers.openlibrary.org/b/id/388761-S.jpg"));
+  }
+
+  @Test
+  void shouldReturnNotFoundForMissingCover() throws Exception {
+    when(bookCoverStore.find("42")).thenReturn(Optional.empty());
+    when(bookManagementService.getBook("42"))
+        .thenReturn(
+            createBook(1L, "42", "Java 14", "Mike", "Good book", "Software", 200L, "Oracle", ""));
+
+    this.mockMvc.perform(get("/api/books/42/cover")).andExpect(status().is(404));
+  }
+
   private Book createBook(
       Long id,
       String isbn,
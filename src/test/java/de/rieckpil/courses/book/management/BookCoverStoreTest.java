@@ -0,0 +1,138 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookCoverStoreTest {
+
+  private static final String ISBN = "9780596004651";
+  private static final byte[] COVER = "cover of head first java".getBytes(StandardCharsets.UTF_8);
+
+  @TempDir private Path directory;
+
+  private BookCoverStore cut;
+
+  @AfterEach
+  void close() throws IOException {
+    cut.close();
+  }
+
+  @Test
+  void shouldReturnStoredCover() throws IOException {
+    cut = open(DataSize.ofMegabytes(1));
+
+    BookCoverStore.Cover cover = cut.store(ISBN, COVER, "image/jpeg");
+
+    assertEquals(cover, cut.find(ISBN).orElseThrow());
+    assertEquals("image/jpeg", cover.contentType());
+    assertEquals(64, cover.hash().length());
+    assertArrayEquals(COVER, read(cover));
+    assertTrue(cut.find("42").isEmpty());
+  }
+
+  @Test
+  void shouldStoreIdenticalCoversOnce() {
+    cut = open(DataSize.ofMegabytes(1));
+
+    BookCoverStore.Cover first = cut.store(ISBN, COVER, "image/jpeg");
+    BookCoverStore.Cover second = cut.store("9780321356680", COVER, "image/jpeg");
+
+    assertEquals(first, second);
+    assertEquals(2, cut.size());
+  }
+
+  @Test
+  void shouldStartNewSegmentWhenCurrentIsFull() throws IOException {
+    cut = open(DataSize.ofBytes(COVER.length + 1));
+
+    BookCoverStore.Cover first = cut.store(ISBN, COVER, "image/jpeg");
+    BookCoverStore.Cover second =
+        cut.store("9780321356680", "another cover".getBytes(StandardCharsets.UTF_8), "image/png");
+
+    assertEquals(0, first.segment());
+    assertEquals(1, second.segment());
+    assertEquals(0, second.offset());
+    assertArrayEquals(COVER, read(first));
+    assertEquals("another cover", new String(read(second), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void shouldSurviveRestart() throws IOException {
+    cut = open(DataSize.ofMegabytes(1));
+    cut.store(ISBN, "old cover".getBytes(StandardCharsets.UTF_8), "image/jpeg");
+    BookCoverStore.Cover cover = cut.store(ISBN, COVER, "image/jpeg");
+    cut.close();
+
+    cut = open(DataSize.ofMegabytes(1));
+
+    assertEquals(cover, cut.find(ISBN).orElseThrow());
+    assertArrayEquals(COVER, read(cover));
+  }
+
+  @Test
+  void shouldIgnorePartiallyWrittenIndexRecord() throws IOException {
+    cut = open(DataSize.ofMegabytes(1));
+    BookCoverStore.Cover cover = cut.store(ISBN, COVER, "image/jpeg");
+    cut.close();
+
+    Files.write(
+        directory.resolve("covers.idx"), new byte[] {0, 0, 0, 42, 1}, StandardOpenOption.APPEND);
+
+    cut = open(DataSize.ofMegabytes(1));
+    BookCoverStore.Cover next =
+        cut.store("9780321356680", "another cover".getBytes(StandardCharsets.UTF_8), "image/png");
+    cut.close();
+
+    cut = open(DataSize.ofMegabytes(1));
+
+    assertEquals(cover, cut.find(ISBN).orElseThrow());
+    assertEquals(next, cut.find("9780321356680").orElseThrow());
+  }
+
+  @Test
+  void shouldRecognizeStoredCoverUrls() {
+    cut = BookCoverStore.disabled();
+
+    String coverUrl = BookCoverStore.coverUrl(ISBN, "abc");
+
+    assertEquals("/api/books/9780596004651/cover?v=abc", coverUrl);
+    assertTrue(BookCoverStore.isStoredCover(coverUrl));
+    assertFalse(BookCoverStore.isStoredCover("https://covers.openlibrary.org/b/id/388761-S.jpg"));
+    assertFalse(BookCoverStore.isStoredCover(null));
+  }
+
+  @Test
+  void shouldFindNothingWhenDisabled() {
+    cut = BookCoverStore.disabled();
+
+    assertFalse(cut.isEnabled());
+    assertTrue(cut.find(ISBN).isEmpty());
+  }
+
+  private BookCoverStore open(DataSize segmentSize) {
+    BookCoverStore store = new BookCoverStore(true, directory, segmentSize);
+    store.open();
+    return store;
+  }
+
+  private byte[] read(BookCoverStore.Cover cover) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cut.transferTo(cover, Channels.newChannel(output));
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,146 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookCoverSynchronizerTest {
+
+  private static final String ISBN = "9780596004651";
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private ApplicationEventPublisher applicationEventPublisher;
+
+  @TempDir private Path directory;
+
+  private MockWebServer mockWebServer;
+  private BookCoverStore coverStore;
+  private BookCoverSynchronizer cut;
+
+  @BeforeEach
+  void setup() throws IOException {
+    this.mockWebServer = new MockWebServer();
+    this.mockWebServer.start();
+
+    this.coverStore = new BookCoverStore(true, directory, DataSize.ofMegabytes(1));
+    this.coverStore.open();
+    this.cut =
+        new BookCoverSynchronizer(
+            WebClient.create(),
+            coverStore,
+            bookRepository,
+            TransactionOperations.withoutTransaction(),
+            applicationEventPublisher,
+            Schedulers.boundedElastic(),
+            2);
+  }
+
+  @AfterEach
+  void shutdown() throws IOException {
+    this.cut.stop();
+    this.mockWebServer.shutdown();
+    this.coverStore.close();
+  }
+
+  @Test
+  void shouldStoreCoverAndPointThumbnailAtIt() {
+    Book book = book(mockWebServer.url("/b/id/388761-S.jpg").toString());
+    when(bookRepository.findByIsbn(ISBN)).thenReturn(book);
+
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "image/jpeg")
+            .setBody(new Buffer().write(new byte[] {1, 2, 3})));
+
+    Book result = cut.synchronizeCover(ISBN, book.getThumbnailUrl()).block();
+
+    BookCoverStore.Cover cover = coverStore.find(ISBN).orElseThrow();
+    assertEquals(3, cover.length());
+    assertEquals("image/jpeg", cover.contentType());
+    assertEquals(BookCoverStore.coverUrl(ISBN, cover.hash()), result.getThumbnailUrl());
+    assertEquals(mockWebServer.url("/b/id/388761-S.jpg").toString(), result.getCoverSourceUrl());
+    verify(applicationEventPublisher).publishEvent(any(BookStoredEvent.class));
+  }
+
+  @Test
+  void shouldKeepUpstreamThumbnailWhenDownloadFails() {
+    this.mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+
+    String thumbnailUrl = mockWebServer.url("/b/id/388761-S.jpg").toString();
+
+    assertThrows(RuntimeException.class, () -> cut.synchronizeCover(ISBN, thumbnailUrl).block());
+    assertTrue(coverStore.find(ISBN).isEmpty());
+    verifyNoInteractions(bookRepository, applicationEventPublisher);
+  }
+
+  @Test
+  void shouldRejectCoversThatAreNoImages() {
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "text/html")
+            .setBody("<script>alert(42)</script>"));
+
+    String thumbnailUrl = mockWebServer.url("/b/id/388761-S.jpg").toString();
+
+    assertThrows(
+        IllegalStateException.class, () -> cut.synchronizeCover(ISBN, thumbnailUrl).block());
+    assertTrue(coverStore.find(ISBN).isEmpty());
+    verifyNoInteractions(bookRepository, applicationEventPublisher);
+  }
+
+  @Test
+  void shouldDownloadCoversOfStoredBooksInTheBackground() throws InterruptedException {
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "image/png")
+            .setBody(new Buffer().write(new byte[] {1, 2, 3})));
+
+    cut.start();
+    cut.onBookStored(new BookStoredEvent(book(mockWebServer.url("/b/id/388761-S.jpg").toString())));
+
+    assertNotNull(mockWebServer.takeRequest(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldSkipBooksWithStoredCover() {
+    cut.onBookStored(new BookStoredEvent(book(BookCoverStore.coverUrl(ISBN, "abc"))));
+    cut.onBookStored(new BookStoredEvent(book(null)));
+
+    assertEquals(0, mockWebServer.getRequestCount());
+  }
+
+  private Book book(String thumbnailUrl) {
+    Book book = new Book();
+    book.setIsbn(ISBN);
+    book.setTitle("Head First Java");
+    book.setThumbnailUrl(thumbnailUrl);
+    return book;
+  }
+}
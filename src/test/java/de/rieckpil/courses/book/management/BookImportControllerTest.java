@@ -0,0 +1,64 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.Reader;
+
+import de.rieckpil.courses.config.WebSecurityConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(BookImportController.class)
+@Import(WebSecurityConfig.class)
+class BookImportControllerTest {
+
+  @MockBean private BookImporter bookImporter;
+
+  @Autowired private MockMvc mockMvc;
+
+  @Test
+  void shouldRejectAnonymousImports() throws Exception {
+    this.mockMvc
+        .perform(post("/api/books/imports").contentType("text/csv").content("9780596004651"))
+        .andExpect(status().isUnauthorized());
+
+    verifyNoInteractions(bookImporter);
+  }
+
+  @Test
+  void shouldRejectImportsOfUsersWithoutModeratorRole() throws Exception {
+    this.mockMvc
+        .perform(
+            post("/api/books/imports").contentType("text/csv").content("9780596004651").with(jwt()))
+        .andExpect(status().isForbidden());
+
+    verifyNoInteractions(bookImporter);
+  }
+
+  @Test
+  @WithMockUser(roles = "moderator")
+  void shouldImportIsbnsWhenUserHasModeratorRole() throws Exception {
+    when(bookImporter.importIsbns(any(Reader.class)))
+        .thenReturn(new BookImportResult(2, 0, 0, 1, 1, 0));
+
+    this.mockMvc
+        .perform(
+            post("/api/books/imports")
+                .contentType("text/plain")
+                .content("9780596004651\n9780321751041\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.received").value(2))
+        .andExpect(jsonPath("$.alreadyPresent").value(1))
+        .andExpect(jsonPath("$.enqueued").value(1));
+  }
+}
@@ -0,0 +1,150 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsAsyncOperations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookImporterTest {
+
+  private static final String QUEUE = "book-synchronization";
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private SqsAsyncOperations sqsOperations;
+
+  private final List<List<String>> sentBatches = new ArrayList<>();
+
+  private BookImporter cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut = new BookImporter(bookRepository, sqsOperations, QUEUE, 2);
+  }
+
+  @Test
+  void shouldEnqueueValidIsbnsNotPresentYet() throws IOException {
+    when(bookRepository.findExistingIsbns(List.of("9780321751041", "9780596004651")))
+        .thenReturn(List.of("9780596004651"));
+    sendSucceeds();
+
+    BookImportResult result =
+        cut.importIsbns(
+            new StringReader(
+                "isbn\n978-0-321-75104-1\n9780596004651,9780321751041\n9780321751042\n42\n"));
+
+    assertEquals(new BookImportResult(5, 2, 1, 1, 1, 0), result);
+    assertEquals(List.of(List.of("9780321751041")), sentBatches);
+  }
+
+  @Test
+  void shouldSendBatchesOfTen() throws IOException {
+    List<String> isbns = isbns(25);
+    when(bookRepository.findExistingIsbns(isbns)).thenReturn(List.of());
+    sendSucceeds();
+
+    BookImportResult result = cut.importIsbns(new StringReader(String.join("\n", isbns)));
+
+    assertEquals(25, result.enqueued());
+    assertEquals(List.of(10, 10, 5), sentBatches.stream().map(List::size).toList());
+  }
+
+  @Test
+  void shouldLookUpExistingIsbnsInChunks() throws IOException {
+    List<String> isbns = isbns(BookImporter.LOOKUP_CHUNK_SIZE + 1);
+    when(bookRepository.findExistingIsbns(anyCollection())).thenReturn(List.of());
+    sendSucceeds();
+
+    BookImportResult result = cut.importIsbns(new StringReader(String.join(" ", isbns)));
+
+    assertEquals(isbns.size(), result.enqueued());
+    verify(bookRepository, times(2)).findExistingIsbns(anyCollection());
+  }
+
+  @Test
+  void shouldCountBatchesThatFailedToSend() throws IOException {
+    when(bookRepository.findExistingIsbns(anyCollection())).thenReturn(List.of());
+    when(sqsOperations.sendManyAsync(eq(QUEUE), anyCollection()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("SQS unavailable")));
+
+    BookImportResult result = cut.importIsbns(new StringReader(String.join(",", isbns(12))));
+
+    assertEquals(0, result.enqueued());
+    assertEquals(12, result.failed());
+  }
+
+  @Test
+  void shouldNotSendAnythingForEmptyInput() throws IOException {
+    BookImportResult result = cut.importIsbns(new StringReader("\n \n"));
+
+    assertEquals(new BookImportResult(0, 0, 0, 0, 0, 0), result);
+    verify(sqsOperations, never()).sendManyAsync(eq(QUEUE), anyCollection());
+  }
+
+  @Test
+  void shouldRejectIsbnsWithWrongCheckDigit() {
+    assertEquals("9780321751041", BookImporter.normalize("978-0321751041"));
+    assertNull(BookImporter.normalize("9780321751040"));
+    assertNull(BookImporter.normalize("0321751043"));
+  }
+
+  private void sendSucceeds() {
+    when(sqsOperations.sendManyAsync(eq(QUEUE), anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Message<BookSynchronization>> messages = invocation.getArgument(1);
+              sentBatches.add(
+                  messages.stream().map(message -> message.getPayload().isbn()).toList());
+              return CompletableFuture.completedFuture(
+                  new SendResult.Batch<>(
+                      messages.stream()
+                          .map(
+                              message ->
+                                  new SendResult<>(UUID.randomUUID(), QUEUE, message, Map.of()))
+                          .collect(Collectors.toList()),
+                      List.of()));
+            });
+  }
+
+  // valid ISBN-13s, the check digit is computed for each twelve digit prefix
+  private static List<String> isbns(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> "978000000" + String.format("%03d", i))
+        .map(prefix -> prefix + checkDigit(prefix))
+        .toList();
+  }
+
+  private static int checkDigit(String prefix) {
+    int sum = 0;
+    for (int i = 0; i < prefix.length(); i++) {
+      int digit = prefix.charAt(i) - '0';
+      sum += i % 2 == 0 ? digit : digit * 3;
+    }
+    return (10 - sum % 10) % 10;
+  }
+}
@@ -0,0 +1,149 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookManagementServiceTest {
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private BookCatalogCache bookCatalogCache;
+
+  @Mock private BookSearch bookSearch;
+
+  @Mock private BookSuggestionIndex bookSuggestionIndex;
+
+  @Mock private EntityManager entityManager;
+
+  @InjectMocks private BookManagementService cut;
+
+  @Test
+  void shouldReturnNextCursorWhenMoreBooksAreAvailable() {
+    when(bookRepository.findSummariesByIdGreaterThan(0L, PageRequest.of(0, 3)))
+        .thenReturn(books(1, 3));
+
+    BookPage result = cut.getBooks(null, 2);
+
+    assertEquals(2, result.books().size());
+    assertEquals(2L, result.next());
+  }
+
+  @Test
+  void shouldNotReturnNextCursorOnLastPage() {
+    when(bookRepository.findSummariesByIdGreaterThan(2L, PageRequest.of(0, 3)))
+        .thenReturn(books(3, 3));
+
+    BookPage result = cut.getBooks(2L, 2);
+
+    assertEquals(1, result.books().size());
+    assertNull(result.next());
+  }
+
+  @Test
+  void shouldLimitPageSize() {
+    when(bookRepository.findSummariesByIdGreaterThan(
+            0L, PageRequest.of(0, BookManagementService.MAX_PAGE_SIZE + 1)))
+        .thenReturn(List.of());
+
+    BookPage result = cut.getBooks(null, 10_000);
+
+    assertEquals(0, result.books().size());
+    assertNull(result.next());
+  }
+
+  @Test
+  void shouldLimitSearchPageSize() {
+    BookSearchResult expected = new BookSearchResult(List.of(), 0, 100, 0);
+    when(bookSearch.search("java", 0, BookManagementService.MAX_SEARCH_PAGE_SIZE))
+        .thenReturn(expected);
+
+    assertEquals(expected, cut.searchBooks("java", -1, 10_000));
+  }
+
+  @Test
+  void shouldLimitNumberOfSuggestions() {
+    when(bookSuggestionIndex.suggest("jav", BookManagementService.MAX_SUGGESTIONS))
+        .thenReturn(List.of());
+
+    assertEquals(0, cut.suggestBooks("jav", 10_000).size());
+  }
+
+  @Test
+  void shouldThrowExceptionWhenBookIsUnknown() {
+    when(bookRepository.findByIsbn("42")).thenReturn(null);
+
+    assertThrows(BookNotFoundException.class, () -> cut.getBook("42"));
+  }
+
+  @Test
+  void shouldLookupBooksInRequestOrderWithMisses() {
+    Book first = new Book();
+    first.setIsbn("1");
+    Book second = new Book();
+    second.setIsbn("2");
+
+    when(bookCatalogCache.findByIsbns(Set.of("2", "3", "1"))).thenReturn(Optional.empty());
+    when(bookRepository.findByIsbnIn(Set.of("2", "3", "1"))).thenReturn(List.of(first, second));
+
+    List<BookLookupResult> result = cut.lookupBooks(List.of("2", "3", "1"));
+
+    assertEquals(List.of("2", "3", "1"), result.stream().map(BookLookupResult::isbn).toList());
+    assertEquals(second, result.get(0).book());
+    assertFalse(result.get(1).found());
+    assertNull(result.get(1).book());
+    assertEquals(first, result.get(2).book());
+  }
+
+  @Test
+  void shouldLookupBooksFromWarmCatalogCache() {
+    Book book = new Book();
+    book.setIsbn("1");
+
+    when(bookCatalogCache.findByIsbns(Set.of("1"))).thenReturn(Optional.of(Map.of("1", book)));
+
+    List<BookLookupResult> result = cut.lookupBooks(List.of("1", "1"));
+
+    assertEquals(2, result.size());
+    assertTrue(result.get(1).found());
+    verifyNoInteractions(bookRepository);
+  }
+
+  @Test
+  void shouldRejectTooManyIsbns() {
+    List<String> isbns =
+        LongStream.rangeClosed(0, BookManagementService.MAX_LOOKUP_SIZE)
+            .mapToObj(String::valueOf)
+            .toList();
+
+    assertThrows(TooManyIsbnsException.class, () -> cut.lookupBooks(isbns));
+  }
+
+  private List<BookSummary> books(long fromId, long toId) {
+    return LongStream.rangeClosed(fromId, toId)
+        .mapToObj(
+            id ->
+                new BookSummary(
+                    id, String.valueOf(id), "Title", "Author", "Genre", null, "Publisher", 42L))
+        .toList();
+  }
+}
@@ -0,0 +1,201 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookMetadataRefresherTest {
+
+  private static final Instant NOW = Instant.parse("2024-01-08T10:00:00Z");
+  private static final Instant STALE_BEFORE = NOW.minus(Duration.ofDays(7));
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private OpenLibraryApiClient openLibraryApiClient;
+
+  @Mock private ApplicationEventPublisher applicationEventPublisher;
+
+  private BookMetadataRefresher cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut =
+        new BookMetadataRefresher(
+            bookRepository,
+            openLibraryApiClient,
+            applicationEventPublisher,
+            TransactionOperations.withoutTransaction(),
+            Duration.ofDays(7),
+            2,
+            3,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @Test
+  void shouldOnlyWriteBackBooksWhoseMetadataChanged() {
+    Book unchanged = book(1L, "42", "Java");
+    Book changed = book(2L, "43", "Kotlin");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2))
+        .thenReturn(List.of(unchanged, changed));
+    when(bookRepository.findStaleBooks(2L, STALE_BEFORE, 1)).thenReturn(List.of());
+    when(openLibraryApiClient.refreshMetadataForBooks(List.of("42", "43")))
+        .thenReturn(Map.of("42", book(null, "42", "Java"), "43", book(null, "43", "Kotlin 2")));
+
+    cut.refreshStaleBooks();
+
+    assertEquals("Kotlin 2", changed.getTitle());
+    verify(bookRepository).saveAll(List.of(changed));
+    verify(bookRepository).markSynced(List.of(1L, 2L), NOW);
+    verify(applicationEventPublisher).publishEvent(new BookStoredEvent(changed));
+    verifyNoMoreInteractions(applicationEventPublisher);
+  }
+
+  @Test
+  void shouldStopOnceTheBudgetOfARunIsSpent() {
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2))
+        .thenReturn(List.of(book(1L, "42", "Java"), book(2L, "43", "Kotlin")));
+    when(bookRepository.findStaleBooks(2L, STALE_BEFORE, 1))
+        .thenReturn(List.of(book(3L, "44", "Scala")));
+    when(openLibraryApiClient.refreshMetadataForBooks(any())).thenReturn(Map.of());
+
+    cut.refreshStaleBooks();
+
+    verify(bookRepository, times(2)).findStaleBooks(anyLong(), eq(STALE_BEFORE), anyInt());
+
+    // the next run continues after the last refreshed book
+    when(bookRepository.findStaleBooks(3L, STALE_BEFORE, 2)).thenReturn(List.of());
+
+    cut.refreshStaleBooks();
+
+    verify(bookRepository).findStaleBooks(3L, STALE_BEFORE, 2);
+  }
+
+  @Test
+  void shouldRetrySameBooksWithNextRunWhenOpenLibraryFails() {
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2))
+        .thenReturn(List.of(book(1L, "42", "Java")));
+    when(openLibraryApiClient.refreshMetadataForBooks(any()))
+        .thenThrow(new IllegalStateException("Network timeout"));
+
+    cut.refreshStaleBooks();
+    cut.refreshStaleBooks();
+
+    verify(bookRepository, times(2)).findStaleBooks(0L, STALE_BEFORE, 2);
+    verify(bookRepository, never()).markSynced(any(), any());
+  }
+
+  @Test
+  void shouldOnlyMarkBookAsSyncedWhenRevalidationReportsNoChange() {
+    Book book = book(1L, "42", "Java");
+    book.setMetadataEtag("\"v1\"");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2)).thenReturn(List.of(book));
+    when(bookRepository.findStaleBooks(1L, STALE_BEFORE, 2)).thenReturn(List.of());
+    when(openLibraryApiClient.revalidateMetadataForBook(book)).thenReturn(Optional.empty());
+
+    cut.refreshStaleBooks();
+
+    verify(bookRepository).saveAll(List.of());
+    verify(bookRepository).markSynced(List.of(1L), NOW);
+    verifyNoInteractions(applicationEventPublisher);
+  }
+
+  @Test
+  void shouldStoreNewValidatorsOfRevalidatedBook() {
+    Book book = book(1L, "42", "Java");
+    book.setMetadataEtag("\"v1\"");
+    Book fetched = book(null, "42", "Java");
+    fetched.setMetadataEtag("\"v2\"");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2)).thenReturn(List.of(book));
+    when(bookRepository.findStaleBooks(1L, STALE_BEFORE, 2)).thenReturn(List.of());
+    when(openLibraryApiClient.revalidateMetadataForBook(book)).thenReturn(Optional.of(fetched));
+
+    cut.refreshStaleBooks();
+
+    assertEquals("\"v2\"", book.getMetadataEtag());
+    verify(bookRepository).saveAll(List.of(book));
+    verifyNoInteractions(applicationEventPublisher);
+  }
+
+  @Test
+  void shouldRevalidateOnlyBooksWithValidatorsIndividually() {
+    Book validated = book(1L, "42", "Java");
+    validated.setMetadataEtag("\"v1\"");
+    Book unvalidated = book(2L, "43", "Kotlin");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2))
+        .thenReturn(List.of(validated, unvalidated));
+    when(bookRepository.findStaleBooks(2L, STALE_BEFORE, 1)).thenReturn(List.of());
+    when(openLibraryApiClient.revalidateMetadataForBook(validated)).thenReturn(Optional.empty());
+    when(openLibraryApiClient.refreshMetadataForBooks(List.of("43")))
+        .thenReturn(Map.of("43", book(null, "43", "Kotlin 2")));
+
+    cut.refreshStaleBooks();
+
+    verify(openLibraryApiClient, never()).revalidateMetadataForBook(unvalidated);
+    verify(bookRepository).saveAll(List.of(unvalidated));
+    verify(bookRepository).markSynced(List.of(1L, 2L), NOW);
+  }
+
+  @Test
+  void shouldKeepStoredCoverWhileUpstreamThumbnailIsUnchanged() {
+    Book book = book(1L, "42", "Java");
+    book.setThumbnailUrl(BookCoverStore.coverUrl("42", "abc"));
+    book.setCoverSourceUrl("https://covers.openlibrary.org/b/id/388761-S.jpg");
+    Book fetched = book(null, "42", "Java");
+    fetched.setThumbnailUrl("https://covers.openlibrary.org/b/id/388761-S.jpg");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2)).thenReturn(List.of(book));
+    when(bookRepository.findStaleBooks(1L, STALE_BEFORE, 2)).thenReturn(List.of());
+    when(openLibraryApiClient.refreshMetadataForBooks(List.of("42")))
+        .thenReturn(Map.of("42", fetched));
+
+    cut.refreshStaleBooks();
+
+    assertEquals(BookCoverStore.coverUrl("42", "abc"), book.getThumbnailUrl());
+    verify(bookRepository).saveAll(List.of());
+    verifyNoInteractions(applicationEventPublisher);
+  }
+
+  @Test
+  void shouldReplaceStoredCoverWhenUpstreamThumbnailChanged() {
+    Book book = book(1L, "42", "Java");
+    book.setThumbnailUrl(BookCoverStore.coverUrl("42", "abc"));
+    book.setCoverSourceUrl("https://covers.openlibrary.org/b/id/388761-S.jpg");
+    Book fetched = book(null, "42", "Java");
+    fetched.setThumbnailUrl("https://covers.openlibrary.org/b/id/999999-S.jpg");
+    when(bookRepository.findStaleBooks(0L, STALE_BEFORE, 2)).thenReturn(List.of(book));
+    when(bookRepository.findStaleBooks(1L, STALE_BEFORE, 2)).thenReturn(List.of());
+    when(openLibraryApiClient.refreshMetadataForBooks(List.of("42")))
+        .thenReturn(Map.of("42", fetched));
+
+    cut.refreshStaleBooks();
+
+    assertEquals("https://covers.openlibrary.org/b/id/999999-S.jpg", book.getThumbnailUrl());
+    verify(applicationEventPublisher).publishEvent(new BookStoredEvent(book));
+  }
+
+  private Book book(Long id, String isbn, String title) {
+    Book book = new Book();
+    book.setId(id);
+    book.setIsbn(isbn);
+    book.setTitle(title);
+    return book;
+  }
+}
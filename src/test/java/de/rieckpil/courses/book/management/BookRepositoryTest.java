@@ -0,0 +1,122 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BookRepositoryTest {
+
+  @Container
+  static PostgreSQLContainer<?> container =
+      new PostgreSQLContainer<>("postgres:15.3")
+          .withDatabaseName("test")
+          .withUsername("duke")
+          .withPassword("s3cret");
+
+  @DynamicPropertySource
+  static void properties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", container::getJdbcUrl);
+    registry.add("spring.datasource.password", container::getPassword);
+    registry.add("spring.datasource.username", container::getUsername);
+  }
+
+  @Autowired private BookRepository cut;
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  @Sql(scripts = "/scripts/INIT_REVIEW_EACH_BOOK.sql")
+  void shouldRankFullTextMatchesInTitleFirst() {
+
+    List<Book> result = cut.searchByFullText("spring", 10, 0);
+
+    assertEquals(1, result.size());
+    assertEquals("Spring Boot", result.get(0).getTitle());
+    assertEquals(1, cut.countByFullText("spring"));
+  }
+
+  @Test
+  @Sql(scripts = "/scripts/INIT_REVIEW_EACH_BOOK.sql")
+  void shouldPaginateFullTextMatches() {
+
+    assertEquals(2, cut.countByFullText("duke"));
+    assertEquals(1, cut.searchByFullText("duke", 1, 0).size());
+    assertEquals(1, cut.searchByFullText("duke", 1, 1).size());
+    assertEquals(0, cut.searchByFullText("duke", 1, 2).size());
+  }
+
+  @Test
+  @Sql(scripts = "/scripts/INIT_REVIEW_EACH_BOOK.sql")
+  void shouldReturnSummariesInIdOrder() {
+
+    List<BookSummary> result = cut.findSummariesByIdGreaterThan(0L, PageRequest.of(0, 2));
+
+    assertEquals(2, result.size());
+    assertTrue(result.get(0).id() < result.get(1).id());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void shouldResolveIsbnFromNaturalIdCache() {
+    Book book = new Book();
+    book.setIsbn("42");
+    book.setTitle("Java 21");
+    Book stored = cut.save(book);
+
+    try {
+      Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+      statistics.clear();
+
+      // each lookup runs in its own transaction and persistence context
+      assertNotNull(cut.findByIsbn("42"));
+      assertNotNull(cut.findByIsbn("42"));
+
+      assertEquals(2, statistics.getNaturalIdCacheHitCount());
+      assertEquals(0, statistics.getNaturalIdQueryExecutionCount());
+    } finally {
+      cut.delete(stored);
+    }
+  }
+
+  @Test
+  void shouldSkipBooksWhoseIsbnIsAlreadyStored() {
+    assertTrue(cut.insertIfAbsent(book("42", "Java")));
+
+    List<Book> inserted = cut.insertAllIfAbsent(List.of(book("42", "Java"), book("43", "Kotlin")));
+
+    assertEquals(1, inserted.size());
+    assertEquals("43", inserted.get(0).getIsbn());
+    assertNotNull(inserted.get(0).getId());
+    assertFalse(cut.insertIfAbsent(book("43", "Kotlin")));
+  }
+
+  private Book book(String isbn, String title) {
+    Book book = new Book();
+    book.setIsbn(isbn);
+    book.setTitle(title);
+    return book;
+  }
+}
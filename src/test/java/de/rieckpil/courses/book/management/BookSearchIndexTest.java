@@ -0,0 +1,127 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookSearchIndexTest {
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private EntityManager entityManager;
+
+  private BookSearchIndex cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut = new BookSearchIndex(bookRepository, entityManager);
+
+    cut.index(
+        createBook(
+            "1", "Head First Java", "Kathy Sierra", "Programming", "A brain friendly guide"));
+    cut.index(createBook("2", "Effective Java", "Joshua Bloch", "Programming", "Best practices"));
+    cut.index(
+        createBook("3", "Domain-Driven Design", "Eric Evans", "Architecture", "Java examples"));
+  }
+
+  @Test
+  void shouldDetachBooksIndexedOnRebuild() {
+    Book book = createBook("4", "Clean Code", "Robert Martin", "Programming", "Craftsmanship");
+    when(bookRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(book));
+
+    cut.rebuild();
+
+    verify(entityManager).detach(book);
+    assertEquals("4", cut.search("clean", 0, 10).books().get(0).getIsbn());
+  }
+
+  @Test
+  void shouldRankTitleMatchesBeforeDescriptionMatches() {
+    BookSearchResult result = cut.search("java", 0, 10);
+
+    assertEquals(3, result.total());
+    assertEquals("3", result.books().get(2).getIsbn());
+  }
+
+  @Test
+  void shouldRankBooksMatchingMoreTermsFirst() {
+    BookSearchResult result = cut.search("Effective JAVA", 0, 10);
+
+    assertEquals("2", result.books().get(0).getIsbn());
+  }
+
+  @Test
+  void shouldPaginateResults() {
+    BookSearchResult result = cut.search("java", 1, 2);
+
+    assertEquals(3, result.total());
+    assertEquals(1, result.books().size());
+  }
+
+  @Test
+  void shouldReturnNothingForUnknownTerms() {
+    BookSearchResult result = cut.search("kotlin", 0, 10);
+
+    assertEquals(0, result.total());
+    assertTrue(result.books().isEmpty());
+  }
+
+  @Test
+  void shouldReplaceOutdatedTokensWhenBookIsStoredAgain() {
+    cut.onBookStored(
+        new BookStoredEvent(createBook("2", "Effective Kotlin", "Marcin", "Programming", "")));
+
+    assertEquals(1, cut.search("kotlin", 0, 10).total());
+    assertEquals(0, cut.search("bloch", 0, 10).total());
+  }
+
+  @Test
+  void shouldTokenizeCaseInsensitiveAndIgnorePunctuation() {
+    assertEquals(
+        Set.of("domain", "driven", "design", "2nd"),
+        BookSearchIndex.tokenize("Domain-Driven Design, 2nd!"));
+  }
+
+  @Test
+  void shouldIgnoreStopwords() {
+    assertEquals(
+        Set.of("art", "computer", "programming"),
+        BookSearchIndex.tokenize("The Art of Computer Programming"));
+    assertEquals(0, cut.search("the of and", 0, 10).total());
+  }
+
+  @Test
+  void shouldReturnSameRankingAcrossPages() {
+    List<String> firstPage = cut.search("java", 0, 2).books().stream().map(Book::getIsbn).toList();
+    List<String> secondPage = cut.search("java", 1, 2).books().stream().map(Book::getIsbn).toList();
+    List<String> all = cut.search("java", 0, 10).books().stream().map(Book::getIsbn).toList();
+
+    assertEquals(all.subList(0, 2), firstPage);
+    assertEquals(all.subList(2, 3), secondPage);
+  }
+
+  private Book createBook(
+      String isbn, String title, String author, String genre, String description) {
+    Book book = new Book();
+    book.setIsbn(isbn);
+    book.setTitle(title);
+    book.setAuthor(author);
+    book.setGenre(genre);
+    book.setPublisher("Publisher");
+    book.setDescription(description);
+    return book;
+  }
+}
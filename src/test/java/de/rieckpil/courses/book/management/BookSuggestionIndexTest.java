@@ -0,0 +1,113 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+import de.rieckpil.courses.book.review.ReviewChangedEvent;
+import de.rieckpil.courses.book.review.ReviewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookSuggestionIndexTest {
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private ReviewRepository reviewRepository;
+
+  private BookSuggestionIndex cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut = new BookSuggestionIndex(bookRepository, reviewRepository);
+
+    cut.index("1", "Head First Java", "Kathy Sierra", 3);
+    cut.index("2", "Effective Java", "Joshua Bloch", 7);
+    cut.index("3", "Java Concurrency in Practice", "Brian Goetz", 5);
+    cut.index("4", "Head First Design Patterns", "Kathy Sierra", 2);
+  }
+
+  @Test
+  void shouldRankSuggestionsByReviews() {
+    List<BookSuggestion> result = cut.suggest("Jav", 10);
+
+    assertEquals(List.of("2", "3", "1"), result.stream().map(BookSuggestion::isbn).toList());
+  }
+
+  @Test
+  void shouldMatchAnyWordOfTitlesAndAuthors() {
+    List<BookSuggestion> result = cut.suggest("sier", 10);
+
+    assertEquals(1, result.size());
+    assertEquals("Kathy Sierra", result.get(0).value());
+    assertEquals(BookSuggestion.AUTHOR, result.get(0).type());
+    assertEquals(5, result.get(0).reviews());
+  }
+
+  @Test
+  void shouldSuggestBookOnceWhenSeveralWordsShareThePrefix() {
+    cut.index("5", "The Theory of Everything", "Thea Thomas", 3);
+
+    List<BookSuggestion> result = cut.suggest("the", 10);
+
+    assertEquals(
+        List.of("The Theory of Everything", "Thea Thomas"),
+        result.stream().map(BookSuggestion::value).toList());
+  }
+
+  @Test
+  void shouldMatchPrefixesLongerThanTheIndexedDepth() {
+    cut.index("5", "Head First Design Patterns", "Eric Freeman", 4);
+
+    List<BookSuggestion> result = cut.suggest("Head First Design Pat", 10);
+
+    assertEquals(List.of("5", "4"), result.stream().map(BookSuggestion::isbn).toList());
+    assertTrue(cut.suggest("Head First Design Rules", 10).isEmpty());
+  }
+
+  @Test
+  void shouldLimitSuggestions() {
+    List<BookSuggestion> result = cut.suggest("head first", 1);
+
+    assertEquals(1, result.size());
+    assertEquals("1", result.get(0).isbn());
+  }
+
+  @Test
+  void shouldReturnNothingForEmptyOrUnknownPrefix() {
+    assertTrue(cut.suggest(" ", 10).isEmpty());
+    assertTrue(cut.suggest("kotlin", 10).isEmpty());
+  }
+
+  @Test
+  void shouldReplaceOutdatedTitleWhenBookIsStoredAgain() {
+    Book book = new Book();
+    book.setIsbn("1");
+    book.setTitle("Head First Kotlin");
+    book.setAuthor("Dawn Griffiths");
+    when(reviewRepository.countByBookIsbn("1")).thenReturn(3L);
+
+    cut.onBookStored(new BookStoredEvent(book));
+
+    assertEquals(
+        List.of("2", "3"), cut.suggest("java", 10).stream().map(BookSuggestion::isbn).toList());
+    assertEquals("1", cut.suggest("kotl", 10).get(0).isbn());
+    assertEquals(2, cut.suggest("kathy", 10).get(0).reviews());
+  }
+
+  @Test
+  void shouldReRankWhenReviewsChange() {
+    when(reviewRepository.countByBookIsbn("1")).thenReturn(10L);
+
+    cut.onReviewChanged(new ReviewChangedEvent("1", 42L));
+
+    assertEquals("1", cut.suggest("java", 10).get(0).isbn());
+    assertEquals(12, cut.suggest("kathy", 10).get(0).reviews());
+  }
+}
@@ -0,0 +1,118 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import io.awspring.cloud.sqs.listener.acknowledgement.BatchAcknowledgement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.scheduler.Schedulers;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSynchronizationBatchListenerTest {
+
+  private static final String NEW_ISBN = "1234567891234";
+  private static final String EXISTING_ISBN = "1234567891235";
+  private static final String UNKNOWN_ISBN = "1234567891236";
+
+  @Mock private BookRepository bookRepository;
+
+  @Mock private OpenLibraryApiClient openLibraryApiClient;
+
+  @Mock private ApplicationEventPublisher applicationEventPublisher;
+
+  @Mock private BatchAcknowledgement<BookSynchronization> acknowledgement;
+
+  @Mock private BookSynchronizationErrorHandler errorHandler;
+
+  private BookSynchronizationBatchListener cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut =
+        new BookSynchronizationBatchListener(
+            bookRepository,
+            openLibraryApiClient,
+            applicationEventPublisher,
+            Schedulers.immediate(),
+            errorHandler);
+  }
+
+  @Test
+  void shouldAcknowledgeMalformedAndExistingIsbnsWithoutFetchingThem() {
+    Message<BookSynchronization> malformed = message("42");
+    Message<BookSynchronization> existing = message(EXISTING_ISBN);
+
+    when(bookRepository.findExistingIsbns(Set.of(EXISTING_ISBN)))
+        .thenReturn(List.of(EXISTING_ISBN));
+
+    cut.consumeBookUpdates(List.of(malformed, existing), acknowledgement).join();
+
+    verify(acknowledgement).acknowledge(List.of(malformed, existing));
+    verifyNoInteractions(openLibraryApiClient, applicationEventPublisher);
+  }
+
+  @Test
+  void shouldStoreNewBooksWithSingleFetchAndRetryUnresolvedIsbnsLater() {
+    Message<BookSynchronization> existing = message(EXISTING_ISBN);
+    Message<BookSynchronization> newBook = message(NEW_ISBN);
+    Message<BookSynchronization> unknown = message(UNKNOWN_ISBN);
+
+    Book fetched = book(NEW_ISBN);
+
+    when(bookRepository.findExistingIsbns(Set.of(EXISTING_ISBN, NEW_ISBN, UNKNOWN_ISBN)))
+        .thenReturn(List.of(EXISTING_ISBN));
+    when(openLibraryApiClient.fetchMetadataForBooks(Set.of(NEW_ISBN, UNKNOWN_ISBN)))
+        .thenReturn(Map.of(NEW_ISBN, fetched));
+    when(bookRepository.insertAllIfAbsent(any())).thenReturn(List.of(fetched));
+    when(errorHandler.retryLater(eq(List.of(unknown)), any(UnknownIsbnException.class)))
+        .thenReturn(CompletableFuture.completedFuture(0));
+
+    cut.consumeBookUpdates(List.of(existing, newBook, unknown), acknowledgement).join();
+
+    verify(acknowledgement).acknowledge(List.of(existing));
+    verify(acknowledgement).acknowledge(List.of(newBook));
+    verify(applicationEventPublisher).publishEvent(new BookStoredEvent(fetched));
+    verifyNoMoreInteractions(acknowledgement);
+  }
+
+  @Test
+  void shouldRetryOnlyUnacknowledgedUpdatesWhenFetchingFails() {
+    Message<BookSynchronization> existing = message(EXISTING_ISBN);
+    Message<BookSynchronization> newBook = message(NEW_ISBN);
+    RuntimeException failure = new RuntimeException("Network timeout");
+
+    when(bookRepository.findExistingIsbns(Set.of(EXISTING_ISBN, NEW_ISBN)))
+        .thenReturn(List.of(EXISTING_ISBN));
+    when(openLibraryApiClient.fetchMetadataForBooks(Set.of(NEW_ISBN))).thenThrow(failure);
+    when(errorHandler.retryLater(List.of(newBook), failure))
+        .thenReturn(CompletableFuture.completedFuture(0));
+
+    cut.consumeBookUpdates(List.of(existing, newBook), acknowledgement).join();
+
+    verify(acknowledgement).acknowledge(List.of(existing));
+    verifyNoMoreInteractions(acknowledgement);
+    verify(bookRepository, never()).insertAllIfAbsent(any());
+  }
+
+  private Message<BookSynchronization> message(String isbn) {
+    return MessageBuilder.withPayload(new BookSynchronization(isbn)).build();
+  }
+
+  private Book book(String isbn) {
+    Book book = new Book();
+    book.setIsbn(isbn);
+    return book;
+  }
+}
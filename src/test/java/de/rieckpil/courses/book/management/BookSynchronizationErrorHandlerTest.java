@@ -0,0 +1,129 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.random.RandomGenerator;
+
+import io.awspring.cloud.sqs.listener.SqsHeaders;
+import io.awspring.cloud.sqs.listener.Visibility;
+import io.awspring.cloud.sqs.operations.SqsAsyncOperations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSynchronizationErrorHandlerTest {
+
+  private static final BookSynchronization BOOK_SYNCHRONIZATION =
+      new BookSynchronization("1234567891234");
+
+  @Mock private SqsAsyncOperations sqsOperations;
+
+  @Mock private Visibility visibility;
+
+  @Mock private RandomGenerator random;
+
+  private BookSynchronizationErrorHandler cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut =
+        new BookSynchronizationErrorHandler(
+            sqsOperations,
+            "books-dlq",
+            5,
+            Duration.ofSeconds(2),
+            Duration.ofSeconds(60),
+            Duration.ofSeconds(30),
+            random);
+  }
+
+  @Test
+  void shouldDelayRedeliveryWithJitteredExponentialBackoff() {
+    when(random.nextLong(anyLong())).then(invocation -> invocation.<Long>getArgument(0) - 1);
+    when(visibility.changeToAsync(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+
+    CompletableFuture<Void> result =
+        cut.handle(message(3), new IllegalStateException("Network timeout"));
+
+    assertThrows(CompletionException.class, result::join);
+    verify(visibility).changeToAsync(8);
+    verifyNoInteractions(sqsOperations);
+  }
+
+  @Test
+  void shouldCapBackoffDelay() {
+    when(random.nextLong(anyLong())).then(invocation -> invocation.<Long>getArgument(0) - 1);
+
+    assertEquals(60, cut.backoffSeconds(40));
+  }
+
+  @Test
+  void shouldMoveMessageToDeadLetterQueueOnceAttemptsAreExhausted() {
+    when(sqsOperations.sendAsync("books-dlq", (Object) BOOK_SYNCHRONIZATION))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    cut.handle(message(5), new IllegalStateException("Network timeout")).join();
+
+    verifyNoInteractions(visibility);
+  }
+
+  @Test
+  void shouldFailBatchWhenAnyMessageIsRedelivered() {
+    when(random.nextLong(anyLong())).thenReturn(1L);
+    when(visibility.changeToAsync(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+
+    CompletableFuture<Void> result =
+        cut.handle(List.of(message(1), message(2)), new IllegalStateException("Network timeout"));
+
+    assertThrows(CompletionException.class, result::join);
+    verify(visibility, times(2)).changeToAsync(1);
+  }
+
+  @Test
+  void shouldDelayRedeliveryOfUnresolvedMessagesWithoutFailing() {
+    when(random.nextLong(anyLong())).thenReturn(1L);
+    when(visibility.changeToAsync(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+
+    int deadLettered =
+        cut.retryLater(List.of(message(1)), new UnknownIsbnException("Unknown isbn")).join();
+
+    assertEquals(0, deadLettered);
+    verify(visibility).changeToAsync(1);
+    verifyNoInteractions(sqsOperations);
+  }
+
+  @Test
+  void shouldDeferShedUpdatesWithoutDeadLetteringThem() {
+    when(visibility.changeToAsync(anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+
+    CompletableFuture<Void> result =
+        cut.handle(
+            message(5),
+            new CompletionException(new RejectedExecutionException("Circuit breaker is open")));
+
+    assertThrows(CompletionException.class, result::join);
+    verify(visibility).changeToAsync(30);
+    verifyNoInteractions(sqsOperations, random);
+  }
+
+  private Message<Object> message(int receiveCount) {
+    return MessageBuilder.<Object>withPayload(BOOK_SYNCHRONIZATION)
+        .setHeader(
+            SqsHeaders.MessageSystemAttributes.SQS_APPROXIMATE_RECEIVE_COUNT,
+            String.valueOf(receiveCount))
+        .setHeader(SqsHeaders.SQS_VISIBILITY_TIMEOUT_HEADER, visibility)
+        .build();
+  }
+}
@@ -105,14 +105,18 @@ class BookSynchronizationListenerIT {
 
   @Autowired private BookRepository bookRepository;
 
+  @Autowired private BookCatalogCache bookCatalogCache;
+
   @BeforeEach
   void cleanUp() {
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
   }
 
   @AfterEach
   void tearDown() {
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
   }
 
   @Test
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import de.rieckpil.courses.config.ThreadingConfig;
 import io.awspring.cloud.autoconfigure.core.AwsAutoConfiguration;
 import io.awspring.cloud.autoconfigure.core.CredentialsProviderAutoConfiguration;
 import io.awspring.cloud.autoconfigure.core.RegionProviderAutoConfiguration;
@@ -35,7 +36,7 @@ import static org.mockito.Mockito.when;
 import static org.testcontainers.containers.localstack.LocalStackContainer.Service.SQS;
 
 @ExtendWith(SpringExtension.class)
-@Import(BookSynchronizationListener.class)
+@Import({BookSynchronizationListener.class, ThreadingConfig.class})
 @ImportAutoConfiguration({
   JacksonAutoConfiguration.class,
   CredentialsProviderAutoConfiguration.class,
@@ -1,9 +1,17 @@
 package de.rieckpil.courses.book.management;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -15,9 +23,21 @@ class BookSynchronizationListenerTest {
   private static final String VALID_ISBN = "1234567891234";
   @Mock private BookRepository bookRepository;
 
-  @Mock private OpenLibraryApiClient openLibraryApiClient;
+  @Mock private BookMetadataProvider bookMetadataProvider;
+
+  @Mock private ApplicationEventPublisher applicationEventPublisher;
 
-  @InjectMocks private BookSynchronizationListener cut;
+  private BookSynchronizationListener cut;
+
+  @BeforeEach
+  void setup() {
+    this.cut =
+        new BookSynchronizationListener(
+            bookRepository,
+            bookMetadataProvider,
+            applicationEventPublisher,
+            Schedulers.immediate());
+  }
 
   @Captor private ArgumentCaptor<Book> bookArgumentCaptor;
 
@@ -25,9 +45,9 @@ class BookSynchronizationListenerTest {
   void shouldRejectBookWhenIsbnIsMalformed() {
     BookSynchronization bookSynchronization = new BookSynchronization("42");
 
-    cut.consumeBookUpdates(bookSynchronization);
+    cut.consumeBookUpdates(bookSynchronization).join();
 
-    verifyNoInteractions(openLibraryApiClient, bookRepository);
+    verifyNoInteractions(bookMetadataProvider, bookRepository);
   }
 
   @Test
@@ -35,20 +55,23 @@ class BookSynchronizationListenerTest {
     BookSynchronization bookSynchronization = new BookSynchronization(VALID_ISBN);
     when(bookRepository.findByIsbn(VALID_ISBN)).thenReturn(new Book());
 
-    cut.consumeBookUpdates(bookSynchronization);
+    cut.consumeBookUpdates(bookSynchronization).join();
 
-    verifyNoInteractions(openLibraryApiClient);
-    verify(bookRepository, times(0)).save(ArgumentMatchers.any());
+    verifyNoInteractions(bookMetadataProvider, applicationEventPublisher);
+    verify(bookRepository, times(0)).insertIfAbsent(ArgumentMatchers.any());
   }
 
   @Test
   void shouldThrowExceptionWhenProcessingFails() {
     BookSynchronization bookSynchronization = new BookSynchronization(VALID_ISBN);
     when(bookRepository.findByIsbn(VALID_ISBN)).thenReturn(null);
-    when(openLibraryApiClient.fetchMetadataForBook(VALID_ISBN))
-        .thenThrow(new RuntimeException("Network timeout"));
+    when(bookMetadataProvider.fetchMetadataForBookAsync(VALID_ISBN))
+        .thenReturn(Mono.error(new RuntimeException("Network timeout")));
 
-    assertThrows(RuntimeException.class, () -> cut.consumeBookUpdates(bookSynchronization));
+    CompletableFuture<Void> result = cut.consumeBookUpdates(bookSynchronization);
+
+    assertThrows(CompletionException.class, result::join);
+    verify(bookRepository, times(0)).insertIfAbsent(ArgumentMatchers.any());
   }
 
   @Test
@@ -61,21 +84,64 @@ class BookSynchronizationListenerTest {
     requestedBook.setTitle("Java book");
     requestedBook.setIsbn(VALID_ISBN);
 
-    when(openLibraryApiClient.fetchMetadataForBook(VALID_ISBN)).thenReturn(requestedBook);
-    when(bookRepository.save(ArgumentMatchers.any()))
+    when(bookMetadataProvider.fetchMetadataForBookAsync(VALID_ISBN))
+        .thenReturn(Mono.just(requestedBook));
+    when(bookRepository.insertIfAbsent(ArgumentMatchers.any()))
         .then(
             invocation -> {
               Book methodArgument = invocation.getArgument(0);
               methodArgument.setId(1L);
-              return methodArgument;
+              return true;
             });
 
-    cut.consumeBookUpdates(bookSynchronization);
+    cut.consumeBookUpdates(bookSynchronization).join();
 
-    verify(bookRepository).save(bookArgumentCaptor.capture());
+    verify(bookRepository).insertIfAbsent(bookArgumentCaptor.capture());
 
     Book methodArgument = bookArgumentCaptor.getValue();
     assertEquals("Java book", methodArgument.getTitle());
     assertEquals(VALID_ISBN, methodArgument.getIsbn());
+
+    verify(applicationEventPublisher).publishEvent(new BookStoredEvent(methodArgument));
+  }
+
+  @Test
+  void shouldFetchAndStoreBookOnlyOnceForConcurrentDuplicates() {
+    BookSynchronization bookSynchronization = new BookSynchronization(VALID_ISBN);
+    when(bookRepository.findByIsbn(VALID_ISBN)).thenReturn(null);
+
+    Book requestedBook = new Book();
+    requestedBook.setIsbn(VALID_ISBN);
+    Sinks.One<Book> response = Sinks.one();
+
+    when(bookMetadataProvider.fetchMetadataForBookAsync(VALID_ISBN)).thenReturn(response.asMono());
+    when(bookRepository.insertIfAbsent(requestedBook)).thenReturn(true);
+
+    CompletableFuture<Void> first = cut.consumeBookUpdates(bookSynchronization);
+    CompletableFuture<Void> second = cut.consumeBookUpdates(bookSynchronization);
+
+    response.tryEmitValue(requestedBook);
+    first.join();
+    second.join();
+
+    verify(bookMetadataProvider, times(1)).fetchMetadataForBookAsync(VALID_ISBN);
+    verify(bookRepository, times(1)).insertIfAbsent(requestedBook);
+  }
+
+  @Test
+  void shouldAcknowledgeWhenBookWasStoredConcurrentlyByAnotherNode() {
+    BookSynchronization bookSynchronization = new BookSynchronization(VALID_ISBN);
+    when(bookRepository.findByIsbn(VALID_ISBN)).thenReturn(null);
+
+    Book requestedBook = new Book();
+    requestedBook.setIsbn(VALID_ISBN);
+
+    when(bookMetadataProvider.fetchMetadataForBookAsync(VALID_ISBN))
+        .thenReturn(Mono.just(requestedBook));
+    when(bookRepository.insertIfAbsent(requestedBook)).thenReturn(false);
+
+    cut.consumeBookUpdates(bookSynchronization).join();
+
+    verifyNoInteractions(applicationEventPublisher);
   }
 }
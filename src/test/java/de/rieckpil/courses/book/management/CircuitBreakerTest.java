@@ -0,0 +1,113 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CircuitBreakerTest {
+
+  private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+  private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+
+  private CircuitBreaker cut;
+
+  @BeforeEach
+  void setup() {
+    Clock clock = mock(Clock.class);
+    when(clock.instant()).thenAnswer(invocation -> now.get());
+
+    this.cut =
+        new CircuitBreaker(
+            "test",
+            50,
+            4,
+            Duration.ofSeconds(30),
+            2,
+            error -> !(error instanceof IllegalArgumentException),
+            clock);
+  }
+
+  @Test
+  void shouldOpenWhenFailureRateOfWindowExceedsThreshold() {
+    succeed();
+    succeed();
+    fail(new IllegalStateException());
+
+    assertEquals(CircuitBreaker.State.CLOSED, cut.state());
+
+    fail(new IllegalStateException());
+
+    assertEquals(CircuitBreaker.State.OPEN, cut.state());
+    assertThrows(RejectedExecutionException.class, () -> cut.protect(Mono.just("call")).block());
+  }
+
+  @Test
+  void shouldNotCountIgnoredErrors() {
+    for (int i = 0; i < 4; i++) {
+      fail(new IllegalArgumentException());
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, cut.state());
+  }
+
+  @Test
+  void shouldCloseAfterSuccessfulTrialCalls() {
+    openBreaker();
+
+    now.set(NOW.plusSeconds(30));
+    assertEquals(CircuitBreaker.State.HALF_OPEN, cut.state());
+
+    succeed();
+    succeed();
+
+    assertEquals(CircuitBreaker.State.CLOSED, cut.state());
+  }
+
+  @Test
+  void shouldReopenWhenTrialCallFails() {
+    openBreaker();
+
+    now.set(NOW.plusSeconds(30));
+    fail(new IllegalStateException());
+
+    assertEquals(CircuitBreaker.State.OPEN, cut.state());
+  }
+
+  @Test
+  void shouldOnlyPermitLimitedTrialCalls() {
+    openBreaker();
+    now.set(NOW.plusSeconds(30));
+
+    cut.protect(Mono.never()).subscribe();
+    cut.protect(Mono.never()).subscribe();
+
+    assertThrows(RejectedExecutionException.class, () -> cut.protect(Mono.just("call")).block());
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 4; i++) {
+      fail(new IllegalStateException());
+    }
+    assertEquals(CircuitBreaker.State.OPEN, cut.state());
+  }
+
+  private void succeed() {
+    cut.protect(Mono.just("success")).block();
+  }
+
+  private void fail(RuntimeException error) {
+    assertThrows(error.getClass(), () -> cut.protect(Mono.error(error)).block());
+  }
+}
@@ -0,0 +1,148 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+  private final ConcurrencyLimiter cut = new ConcurrencyLimiter(1, 1);
+
+  @Test
+  void shouldQueueRequestsExceedingLimitUntilPermitIsReleased() {
+    Sinks.One<String> first = Sinks.one();
+    Sinks.One<String> second = Sinks.one();
+
+    StringBuilder results = new StringBuilder();
+    cut.limit(first.asMono()).subscribe(results::append);
+    cut.limit(second.asMono()).subscribe(results::append);
+
+    assertEquals(1, cut.inFlight());
+    assertEquals(1, cut.pending());
+    assertEquals(0, second.currentSubscriberCount());
+
+    first.tryEmitValue("first");
+
+    assertEquals(1, second.currentSubscriberCount());
+    second.tryEmitValue("second");
+
+    assertEquals("firstsecond", results.toString());
+    assertEquals(0, cut.inFlight());
+    assertEquals(0, cut.pending());
+  }
+
+  @Test
+  void shouldRejectRequestsWhenQueueIsFull() {
+    cut.limit(Mono.never()).subscribe();
+    cut.limit(Mono.never()).subscribe();
+
+    assertThrows(RejectedExecutionException.class, () -> cut.limit(Mono.just("rejected")).block());
+  }
+
+  @Test
+  void shouldRejectRequestsWaitingLongerThanMaxWait() {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(1, 1, 1, 10, Duration.ofMillis(50), Duration.ofMinutes(1));
+    limiter.limit(Mono.never()).subscribe();
+
+    assertThrows(
+        RejectedExecutionException.class, () -> limiter.limit(Mono.just("waiting")).block());
+    assertEquals(0, limiter.pending());
+  }
+
+  @Test
+  void shouldShedUpdatesOfAllListenerThreadsWithDefaultConfiguration() {
+    // clients.open-library and spring.datasource.hikari.maximum-pool-size of application.yml, the
+    // SQS listener concurrency follows the pool size
+    ConcurrencyLimiter defaults =
+        new ConcurrencyLimiter(16, 1, 256, 8, Duration.ofSeconds(2), Duration.ofSeconds(1));
+    int listenerConcurrency = 32;
+
+    AtomicInteger rejected = new AtomicInteger();
+    for (int i = 0; i < listenerConcurrency; i++) {
+      defaults.limit(Mono.never()).subscribe(value -> {}, e -> rejected.incrementAndGet());
+    }
+
+    assertEquals(16, defaults.inFlight());
+    assertEquals(8, defaults.pending());
+    assertEquals(listenerConcurrency - 16 - 8, rejected.get());
+  }
+
+  @Test
+  void shouldReleasePermitWhenRequestFails() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> cut.limit(Mono.error(new IllegalStateException())).block());
+
+    assertEquals("next", cut.limit(Mono.just("next")).block());
+    assertEquals(0, cut.inFlight());
+  }
+
+  @Test
+  void shouldReleasePermitAndDequeueWhenCancelled() {
+    Sinks.One<String> running = Sinks.one();
+    Sinks.One<String> queued = Sinks.one();
+
+    Disposable first = cut.limit(running.asMono()).subscribe();
+    Disposable second = cut.limit(queued.asMono()).subscribe();
+
+    second.dispose();
+    assertEquals(0, cut.pending());
+
+    first.dispose();
+    assertEquals(0, cut.inFlight());
+    assertFalse(queued.currentSubscriberCount() > 0);
+    assertTrue(first.isDisposed());
+  }
+
+  @Test
+  void shouldRaiseLimitWhileRequestsSucceedFast() {
+    ConcurrencyLimiter adaptive =
+        new ConcurrencyLimiter(2, 1, 4, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    for (int i = 0; i < 10; i++) {
+      Sinks.One<String> first = Sinks.one();
+      Sinks.One<String> second = Sinks.one();
+      adaptive.limit(first.asMono()).subscribe();
+      adaptive.limit(second.asMono()).subscribe();
+      first.tryEmitValue("first");
+      second.tryEmitValue("second");
+    }
+
+    assertEquals(4, adaptive.limit());
+  }
+
+  @Test
+  void shouldLowerLimitWhenRequestsFail() {
+    ConcurrencyLimiter adaptive =
+        new ConcurrencyLimiter(10, 2, 10, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    for (int i = 0; i < 20; i++) {
+      assertThrows(
+          IllegalStateException.class,
+          () -> adaptive.limit(Mono.error(new IllegalStateException())).block());
+    }
+
+    assertEquals(2, adaptive.limit());
+  }
+
+  @Test
+  void shouldLowerLimitWhenRequestsAreSlow() {
+    ConcurrencyLimiter adaptive =
+        new ConcurrencyLimiter(10, 1, 10, 10, Duration.ofMinutes(1), Duration.ofNanos(1));
+
+    adaptive.limit(Mono.delay(Duration.ofMillis(5)).map(tick -> "slow")).block();
+
+    assertEquals(9, adaptive.limit());
+  }
+}
@@ -0,0 +1,43 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseBookSearchTest {
+
+  @Mock private BookRepository bookRepository;
+
+  @InjectMocks private DatabaseBookSearch cut;
+
+  @Test
+  void shouldSkipCountQueryWhenFirstPageIsNotFull() {
+    when(bookRepository.searchByFullText("java", 20, 0)).thenReturn(List.of(new Book()));
+
+    BookSearchResult result = cut.search("java", 0, 20);
+
+    assertEquals(1, result.total());
+    verify(bookRepository, never()).countByFullText("java");
+  }
+
+  @Test
+  void shouldCountMatchesWhenRequestingFurtherPages() {
+    when(bookRepository.searchByFullText("java", 20, 40)).thenReturn(List.of(new Book()));
+    when(bookRepository.countByFullText("java")).thenReturn(41L);
+
+    BookSearchResult result = cut.search("java", 2, 20);
+
+    assertEquals(41, result.total());
+    assertEquals(1, result.books().size());
+  }
+}
@@ -0,0 +1,136 @@
+package de.rieckpil.courses.book.management;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HedgedBookMetadataProviderTest {
+
+  private static final String ISBN = "9780596004651";
+
+  @Mock private BookMetadataProvider primary;
+
+  @Mock private BookMetadataProvider hedge;
+
+  private SimpleMeterRegistry meterRegistry;
+  private HedgedBookMetadataProvider cut;
+
+  @BeforeEach
+  void setup() {
+    when(primary.name()).thenReturn("primary");
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.cut = hedged(16);
+  }
+
+  @Test
+  void shouldNotHedgeFastPrimary() {
+    Book book = book("Java");
+    when(primary.fetchMetadataForBookAsync(ISBN)).thenReturn(Mono.just(book));
+
+    assertSame(book, cut.fetchMetadataForBookAsync(ISBN).block());
+
+    verify(hedge, never()).fetchMetadataForBookAsync(ISBN);
+  }
+
+  @Test
+  void shouldReturnHedgeWhenPrimaryExceedsDelay() {
+    when(primary.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.just(book("Java")).delayElement(Duration.ofSeconds(5)));
+    when(hedge.fetchMetadataForBookAsync(ISBN)).thenReturn(Mono.just(book("Java from hedge")));
+
+    Book result = cut.fetchMetadataForBookAsync(ISBN).block(Duration.ofSeconds(2));
+
+    assertEquals("Java from hedge", result.getTitle());
+    assertEquals(
+        1.0,
+        meterRegistry.get("book.metadata.provider.hedges").tag("result", "won").counter().count());
+  }
+
+  @Test
+  void shouldFailWithPrimaryErrorWhenBothFail() {
+    when(primary.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.error(new IllegalStateException("Network timeout")));
+    when(hedge.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.error(new IllegalStateException("Hedge failed")));
+
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class, () -> cut.fetchMetadataForBookAsync(ISBN).block());
+
+    assertEquals("Network timeout", exception.getMessage());
+  }
+
+  @Test
+  void shouldNotHedgeWhenPrimaryIsRejected() {
+    when(primary.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.error(new RejectedExecutionException("Open Library is unavailable")));
+
+    RejectedExecutionException exception =
+        assertThrows(
+            RejectedExecutionException.class,
+            () -> cut.fetchMetadataForBookAsync(ISBN).block(Duration.ofSeconds(2)));
+
+    assertEquals("Open Library is unavailable", exception.getMessage());
+    verify(hedge, never()).fetchMetadataForBookAsync(ISBN);
+  }
+
+  @Test
+  void shouldNotHedgeWhenPrimaryDoesNotKnowTheBook() {
+    when(primary.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.error(new UnknownIsbnException("Unknown isbn")));
+
+    assertThrows(
+        UnknownIsbnException.class,
+        () -> cut.fetchMetadataForBookAsync(ISBN).block(Duration.ofSeconds(2)));
+
+    verify(hedge, never()).fetchMetadataForBookAsync(ISBN);
+  }
+
+  @Test
+  void shouldNotHedgeWhenNoHedgesAreLeft() {
+    cut = hedged(0);
+    when(primary.fetchMetadataForBookAsync(ISBN))
+        .thenReturn(Mono.just(book("Java")).delayElement(Duration.ofMillis(300)));
+
+    assertEquals("Java", cut.fetchMetadataForBookAsync(ISBN).block().getTitle());
+
+    verify(hedge, never()).fetchMetadataForBookAsync(ISBN);
+  }
+
+  @Test
+  void shouldUseInitialDelayUntilEnoughLatenciesAreKnown() {
+    assertEquals(Duration.ofMillis(100).toNanos(), cut.hedgeDelay());
+  }
+
+  private HedgedBookMetadataProvider hedged(int maxConcurrentHedges) {
+    return new HedgedBookMetadataProvider(
+        primary,
+        hedge,
+        meterRegistry,
+        Duration.ofMillis(100),
+        Duration.ofMillis(10),
+        maxConcurrentHedges);
+  }
+
+  private Book book(String title) {
+    Book book = new Book();
+    book.setIsbn(ISBN);
+    book.setTitle(title);
+    return book;
+  }
+}
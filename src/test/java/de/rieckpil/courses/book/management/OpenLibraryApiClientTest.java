@@ -1,8 +1,15 @@
 package de.rieckpil.courses.book.management;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
@@ -12,8 +19,10 @@ import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
 import reactor.netty.http.client.HttpClient;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -60,7 +69,12 @@ class OpenLibraryApiClientTest {
             WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .baseUrl(mockWebServer.url("/").toString())
-                .build());
+                .build(),
+            OpenLibraryResponseCache.disabled(),
+            new ObjectMapper(),
+            new ConcurrencyLimiter(10, 10),
+            circuitBreaker(Clock.systemUTC()),
+            Schedulers.boundedElastic());
   }
 
   @AfterEach
@@ -102,6 +116,53 @@ class OpenLibraryApiClientTest {
     assertEquals("/api/books?jscmd=data&format=json&bibkeys=" + ISBN, recordedRequest.getPath());
   }
 
+  @Test
+  void shouldResolveMultipleIsbnsWithSingleRequest() throws InterruptedException {
+
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(VALID_RESPONSE));
+
+    Map<String, Book> result = cut.fetchMetadataForBooks(List.of(ISBN, "9780321356680"));
+
+    assertEquals(1, result.size());
+    assertEquals("Head first Java", result.get(ISBN).getTitle());
+
+    RecordedRequest recordedRequest = this.mockWebServer.takeRequest();
+    assertEquals(
+        "/api/books?jscmd=data&format=json&bibkeys=" + ISBN + ",9780321356680",
+        recordedRequest.getPath());
+    assertEquals(1, this.mockWebServer.getRequestCount());
+  }
+
+  @Test
+  void shouldServeKnownIsbnFromResponseCache(@TempDir Path cacheDirectory) throws IOException {
+    OpenLibraryResponseCache responseCache =
+        new OpenLibraryResponseCache(true, cacheDirectory, Duration.ofDays(1));
+    OpenLibraryApiClient cachingClient =
+        new OpenLibraryApiClient(
+            WebClient.builder().baseUrl(mockWebServer.url("/").toString()).build(),
+            responseCache,
+            new ObjectMapper(),
+            new ConcurrencyLimiter(10, 10),
+            circuitBreaker(Clock.systemUTC()),
+            Schedulers.boundedElastic());
+
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(VALID_RESPONSE));
+
+    Book first = cachingClient.fetchMetadataForBook(ISBN);
+    Book second = cachingClient.fetchMetadataForBook(ISBN);
+
+    assertEquals(first.getTitle(), second.getTitle());
+    assertEquals(1, this.mockWebServer.getRequestCount());
+
+    responseCache.close();
+  }
+
   @Test
   void shouldReturnBookWhenResultIsSuccessButLackingAllInformation() {
 
@@ -163,6 +224,17 @@ class OpenLibraryApiClientTest {
         });
   }
 
+  @Test
+  void shouldNotRetryIsbnUnknownToOpenLibrary() {
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody("{}"));
+
+    assertThrows(UnknownIsbnException.class, () -> cut.fetchMetadataForBook(ISBN));
+    assertEquals(1, this.mockWebServer.getRequestCount());
+  }
+
   @Test
   void shouldRetryWhenRemoteSystemIsSlowOrFailing() {
 
@@ -187,4 +259,86 @@ class OpenLibraryApiClientTest {
     assertEquals("9780596004651", result.getIsbn());
     assertNull(result.getId());
   }
+
+  @Test
+  void shouldFailFastWithoutCallingOpenLibraryWhileCircuitBreakerIsOpen() {
+    CircuitBreaker circuitBreaker =
+        new CircuitBreaker(
+            "open-library", 50, 2, Duration.ofMinutes(1), 1, e -> true, Clock.systemUTC());
+    OpenLibraryApiClient guardedClient =
+        new OpenLibraryApiClient(
+            WebClient.builder().baseUrl(mockWebServer.url("/").toString()).build(),
+            OpenLibraryResponseCache.disabled(),
+            new ObjectMapper(),
+            new ConcurrencyLimiter(10, 10),
+            circuitBreaker,
+            Schedulers.boundedElastic());
+
+    for (int i = 0; i < 6; i++) {
+      this.mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+    }
+
+    assertThrows(RuntimeException.class, () -> guardedClient.fetchMetadataForBook(ISBN));
+    assertThrows(RuntimeException.class, () -> guardedClient.fetchMetadataForBook(ISBN));
+    int requestsBeforeOpening = this.mockWebServer.getRequestCount();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+    assertThrows(RejectedExecutionException.class, () -> guardedClient.fetchMetadataForBook(ISBN));
+    assertEquals(requestsBeforeOpening, this.mockWebServer.getRequestCount());
+  }
+
+  @Test
+  void shouldKeepValidatorsOfFetchedBook() {
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .addHeader("ETag", "\"v1\"")
+            .addHeader("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT")
+            .setResponseCode(200)
+            .setBody(VALID_RESPONSE));
+
+    Book result = cut.fetchMetadataForBook(ISBN);
+
+    assertEquals("\"v1\"", result.getMetadataEtag());
+    assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", result.getMetadataLastModified());
+  }
+
+  @Test
+  void shouldReportUnchangedBookWhenRevalidationReturnsNotModified() throws InterruptedException {
+    this.mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+
+    Book stored = new Book();
+    stored.setIsbn(ISBN);
+    stored.setMetadataEtag("\"v1\"");
+    stored.setMetadataLastModified("Wed, 21 Oct 2015 07:28:00 GMT");
+
+    assertTrue(cut.revalidateMetadataForBook(stored).isEmpty());
+
+    RecordedRequest recordedRequest = this.mockWebServer.takeRequest();
+    assertEquals("\"v1\"", recordedRequest.getHeader("If-None-Match"));
+    assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", recordedRequest.getHeader("If-Modified-Since"));
+  }
+
+  @Test
+  void shouldReturnChangedBookWhenRevalidationReturnsNewMetadata() {
+    this.mockWebServer.enqueue(
+        new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .addHeader("ETag", "\"v2\"")
+            .setResponseCode(200)
+            .setBody(VALID_RESPONSE));
+
+    Book stored = new Book();
+    stored.setIsbn(ISBN);
+    stored.setMetadataEtag("\"v1\"");
+
+    Book result = cut.revalidateMetadataForBook(stored).orElseThrow();
+
+    assertEquals("Head first Java", result.getTitle());
+    assertEquals("\"v2\"", result.getMetadataEtag());
+  }
+
+  private static CircuitBreaker circuitBreaker(Clock clock) {
+    return new CircuitBreaker("open-library", 50, 20, Duration.ofSeconds(30), 3, e -> true, clock);
+  }
 }
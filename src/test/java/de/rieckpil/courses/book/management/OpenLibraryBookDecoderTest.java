@@ -0,0 +1,94 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenLibraryBookDecoderTest {
+
+  private static final String ISBN = "9780596004651";
+
+  private final OpenLibraryBookDecoder cut = new OpenLibraryBookDecoder(new JsonFactory());
+
+  @Test
+  void shouldDecodeOnlyTheFieldsOfABook() throws IOException {
+    try (InputStream body =
+        getClass().getResourceAsStream("/stubs/openlibrary/success-" + ISBN + ".json")) {
+
+      Map<String, Book> result = cut.decodeAll(body);
+
+      Book book = result.get(ISBN);
+      assertEquals(ISBN, book.getIsbn());
+      assertEquals("Head first Java", book.getTitle());
+      assertEquals("https://covers.openlibrary.org/b/id/388761-S.jpg", book.getThumbnailUrl());
+      assertEquals("Kathy Sierra", book.getAuthor());
+      assertEquals(
+          "Your brain on Java--a learner's guide--Cover.Includes index.", book.getDescription());
+      assertEquals("Java (Computer program language)", book.getGenre());
+      assertEquals("O'Reilly", book.getPublisher());
+      assertEquals(619, book.getPages());
+    }
+  }
+
+  @Test
+  void shouldSkipEntriesWithoutTitle() {
+    String response =
+        """
+        {
+          "42": {"authors": [{"name": "Duke"}], "identifiers": {"isbn_13": ["42"]}},
+          "43": {"title": "Java", "subjects": [], "links": [{"url": "https://duke"}]},
+          "44": []
+        }
+        """;
+
+    Map<String, Book> result = cut.decodeAll(response.getBytes());
+
+    assertEquals(1, result.size());
+    assertEquals("Java", result.get("43").getTitle());
+    assertEquals("n.A", result.get("43").getGenre());
+    assertEquals("n.A.", result.get("43").getPublisher());
+    assertEquals(0, result.get("43").getPages());
+  }
+
+  @Test
+  void shouldReturnNothingForEmptyResponse() {
+    assertTrue(cut.decodeAll("{}".getBytes()).isEmpty());
+  }
+
+  @Test
+  void shouldDecodeEncodedBook() {
+    Book book = new Book();
+    book.setIsbn(ISBN);
+    book.setTitle("Head first Java");
+    book.setAuthor("Kathy Sierra");
+    book.setPublisher("O'Reilly");
+    book.setGenre("Java");
+    book.setDescription("Your brain on Java");
+    book.setThumbnailUrl("https://covers.openlibrary.org/b/id/388761-S.jpg");
+    book.setPages(619L);
+    book.setMetadataEtag("\"v1\"");
+    book.setMetadataLastModified("Wed, 21 Oct 2015 07:28:00 GMT");
+
+    Book result = cut.decode(ISBN, cut.encode(book));
+
+    assertEquals(book.getTitle(), result.getTitle());
+    assertEquals(book.getAuthor(), result.getAuthor());
+    assertEquals(book.getPublisher(), result.getPublisher());
+    assertEquals(book.getGenre(), result.getGenre());
+    assertEquals(book.getDescription(), result.getDescription());
+    assertEquals(book.getThumbnailUrl(), result.getThumbnailUrl());
+    assertEquals(book.getPages(), result.getPages());
+    assertEquals(book.getMetadataEtag(), result.getMetadataEtag());
+    assertEquals(book.getMetadataLastModified(), result.getMetadataLastModified());
+  }
+
+  @Test
+  void shouldRejectCachedEntryWithoutTitle() {
+    assertThrows(IllegalArgumentException.class, () -> cut.decode(ISBN, "{\"notes\": \"Duke\"}"));
+  }
+}
@@ -0,0 +1,106 @@
+package de.rieckpil.courses.book.management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenLibraryResponseCacheTest {
+
+  private static final String ISBN = "9780596004651";
+  private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+  private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+  @TempDir private Path directory;
+
+  private OpenLibraryResponseCache cut;
+
+  @AfterEach
+  void close() throws IOException {
+    cut.close();
+  }
+
+  @Test
+  void shouldReturnStoredResponse() {
+    cut = open(NOW);
+
+    cut.put(ISBN, "{\"title\":\"Head First Java\"}");
+
+    assertEquals(Optional.of("{\"title\":\"Head First Java\"}"), cut.get(ISBN));
+    assertEquals(Optional.empty(), cut.get("42"));
+  }
+
+  @Test
+  void shouldSurviveRestart() throws IOException {
+    cut = open(NOW);
+    cut.put(ISBN, "{\"title\":\"Head First Java\"}");
+    cut.put(ISBN, "{\"title\":\"Head First Java, 2nd Edition\"}");
+    cut.close();
+
+    cut = open(NOW.plusSeconds(60));
+
+    assertEquals(Optional.of("{\"title\":\"Head First Java, 2nd Edition\"}"), cut.get(ISBN));
+  }
+
+  @Test
+  void shouldNotReturnExpiredResponses() throws IOException {
+    cut = open(NOW);
+    cut.put(ISBN, "{}");
+    cut.close();
+
+    cut = open(NOW.plus(TIME_TO_LIVE).plusSeconds(1));
+
+    assertEquals(Optional.empty(), cut.get(ISBN));
+    assertEquals(0, cut.size());
+  }
+
+  @Test
+  void shouldIgnorePartiallyWrittenRecord() throws IOException {
+    cut = open(NOW);
+    cut.put(ISBN, "{}");
+    cut.close();
+
+    Files.write(
+        directory.resolve("open-library.log"),
+        new byte[] {0, 0, 0, 42, 1},
+        StandardOpenOption.APPEND);
+
+    cut = open(NOW);
+    cut.put("42", "{\"title\":\"Java 21\"}");
+
+    assertEquals(Optional.of("{}"), cut.get(ISBN));
+    assertEquals(Optional.of("{\"title\":\"Java 21\"}"), cut.get("42"));
+  }
+
+  @Test
+  void shouldCompactOverwrittenResponses() throws IOException {
+    cut = open(NOW);
+    String largeResponse = "{\"notes\":\"" + "x".repeat(600 * 1024) + "\"}";
+
+    for (int i = 0; i < 3; i++) {
+      cut.put(ISBN, largeResponse);
+    }
+    cut.put("42", "{}");
+
+    assertTrue(Files.size(directory.resolve("open-library.log")) < 2 * largeResponse.length());
+    assertEquals(Optional.of(largeResponse), cut.get(ISBN));
+    assertEquals(Optional.of("{}"), cut.get("42"));
+  }
+
+  private OpenLibraryResponseCache open(Instant now) {
+    return new OpenLibraryResponseCache(
+        true, directory, TIME_TO_LIVE, Clock.fixed(now, ZoneOffset.UTC), Runnable::run);
+  }
+}
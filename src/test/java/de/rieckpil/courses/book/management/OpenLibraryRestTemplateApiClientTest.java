@@ -1,9 +1,11 @@
 package de.rieckpil.courses.book.management;
 
+import de.rieckpil.courses.config.ThreadingConfig;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.client.MockRestServiceServer;
@@ -15,7 +17,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
-@RestClientTest(OpenLibraryRestTemplateApiClient.class)
+@RestClientTest({OpenLibraryRestTemplateApiClient.class, OpenLibraryResponseCache.class})
+@Import(ThreadingConfig.class)
 class OpenLibraryRestTemplateApiClientTest {
 
   @Autowired private OpenLibraryRestTemplateApiClient cut;
@@ -0,0 +1,93 @@
+package de.rieckpil.courses.book.management;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+  private final SingleFlight<String, String> cut = new SingleFlight<>();
+
+  @Test
+  void shouldShareOneCallBetweenConcurrentCallersOfTheSameKey() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.One<String> response = Sinks.one();
+
+    CompletableFuture<String> first =
+        cut.execute("42", () -> countCall(calls, response.asMono())).toFuture();
+    CompletableFuture<String> second =
+        cut.execute("42", () -> countCall(calls, response.asMono())).toFuture();
+
+    assertFalse(first.isDone());
+    assertEquals(1, cut.inFlight());
+
+    response.tryEmitValue("duke");
+
+    assertEquals("duke", first.join());
+    assertEquals("duke", second.join());
+    assertEquals(1, calls.get());
+    assertEquals(0, cut.inFlight());
+  }
+
+  @Test
+  void shouldStartANewCallOnceThePreviousOneCompleted() {
+    AtomicInteger calls = new AtomicInteger();
+
+    cut.execute("42", () -> countCall(calls, Mono.just("duke"))).block();
+    cut.execute("42", () -> countCall(calls, Mono.just("duke"))).block();
+
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void shouldNotShareCallsBetweenDifferentKeys() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.One<String> response = Sinks.one();
+
+    cut.execute("42", () -> countCall(calls, response.asMono())).toFuture();
+    cut.execute("43", () -> countCall(calls, response.asMono())).toFuture();
+
+    assertEquals(2, calls.get());
+    assertEquals(2, cut.inFlight());
+  }
+
+  @Test
+  void shouldPropagateFailureToAllCallers() {
+    Sinks.One<String> response = Sinks.one();
+
+    CompletableFuture<String> first = cut.execute("42", response::asMono).toFuture();
+    CompletableFuture<String> second = cut.execute("42", response::asMono).toFuture();
+
+    response.tryEmitError(new IllegalStateException("Network timeout"));
+
+    assertThrows(CompletionException.class, first::join);
+    assertThrows(CompletionException.class, second::join);
+    assertEquals(0, cut.inFlight());
+  }
+
+  @Test
+  void shouldKeepTheCallRunningWhenOneCallerCancels() {
+    Sinks.One<String> response = Sinks.one();
+
+    CompletableFuture<String> first = cut.execute("42", response::asMono).toFuture();
+    CompletableFuture<String> second = cut.execute("42", response::asMono).toFuture();
+
+    first.cancel(true);
+    response.tryEmitValue("duke");
+
+    assertEquals("duke", second.join());
+  }
+
+  private Mono<String> countCall(AtomicInteger calls, Mono<String> response) {
+    calls.incrementAndGet();
+    return response;
+  }
+}
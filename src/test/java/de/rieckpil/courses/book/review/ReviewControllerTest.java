@@ -3,6 +3,8 @@ package de.rieckpil.courses.book.review;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.rieckpil.courses.book.ContentVersions;
+import de.rieckpil.courses.book.JsonResponseCache;
 import de.rieckpil.courses.config.WebSecurityConfig;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,18 +26,21 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(ReviewController.class)
 // see
 // https://github.com/spring-projects/spring-boot/wiki/Spring-Boot-2.7-Release-Notes#migrating-from-websecurityconfigureradapter-to-securityfilterchain
-@Import(WebSecurityConfig.class)
+@Import({WebSecurityConfig.class, ContentVersions.class, JsonResponseCache.class})
 class ReviewControllerTest {
 
   @MockBean private ReviewService reviewService;
 
   @Autowired private MockMvc mockMvc;
 
+  @Autowired private JsonResponseCache jsonResponseCache;
+
   private ObjectMapper objectMapper;
 
   @BeforeEach
   void beforeEach() {
     this.objectMapper = new ObjectMapper();
+    this.jsonResponseCache.clear();
   }
 
   @Test
@@ -59,6 +64,27 @@ class ReviewControllerTest {
         .andExpect(jsonPath("$.size()", Matchers.is(1)));
   }
 
+  @Test
+  void shouldReturnNotModifiedWhenReviewsAreUnchanged() throws Exception {
+
+    when(reviewService.getAllReviews(20, "none")).thenReturn(objectMapper.createArrayNode());
+
+    String eTag =
+        this.mockMvc
+            .perform(get("/api/books/reviews"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    this.mockMvc
+        .perform(get("/api/books/reviews").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified());
+
+    verify(reviewService, times(1)).getAllReviews(20, "none");
+  }
+
   @Test
   void shouldNotReturnReviewStatisticsWhenUserIsUnauthenticated() throws Exception {
     this.mockMvc.perform(get("/api/books/reviews/statistics")).andExpect(status().isUnauthorized());
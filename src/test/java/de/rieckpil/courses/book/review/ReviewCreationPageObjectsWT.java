@@ -7,6 +7,7 @@ import com.codeborne.selenide.Configuration;
 import com.codeborne.selenide.WebDriverRunner;
 import de.rieckpil.courses.AbstractWebTest;
 import de.rieckpil.courses.book.management.Book;
+import de.rieckpil.courses.book.management.BookCatalogCache;
 import de.rieckpil.courses.book.management.BookRepository;
 import de.rieckpil.courses.pages.DashboardPage;
 import de.rieckpil.courses.pages.LoginPage;
@@ -27,6 +28,8 @@ class ReviewCreationPageObjectsWT extends AbstractWebTest {
 
   @Autowired private BookRepository bookRepository;
 
+  @Autowired private BookCatalogCache bookCatalogCache;
+
   @Autowired private ReviewRepository reviewRepository;
 
   DashboardPage dashboardPage = new DashboardPage();
@@ -65,6 +68,7 @@ class ReviewCreationPageObjectsWT extends AbstractWebTest {
   void tearDown() {
     this.reviewRepository.deleteAll();
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
   }
 
   @Test
@@ -94,5 +98,6 @@ class ReviewCreationPageObjectsWT extends AbstractWebTest {
     book.setGenre("Software Development");
 
     this.bookRepository.save(book);
+    this.bookCatalogCache.invalidate();
   }
 }
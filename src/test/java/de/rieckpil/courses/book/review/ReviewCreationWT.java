@@ -10,6 +10,7 @@ import com.codeborne.selenide.Configuration;
 import com.codeborne.selenide.WebDriverRunner;
 import de.rieckpil.courses.AbstractWebTest;
 import de.rieckpil.courses.book.management.Book;
+import de.rieckpil.courses.book.management.BookCatalogCache;
 import de.rieckpil.courses.book.management.BookRepository;
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -33,6 +34,8 @@ class ReviewCreationWT extends AbstractWebTest {
 
   @Autowired private BookRepository bookRepository;
 
+  @Autowired private BookCatalogCache bookCatalogCache;
+
   @Autowired private ReviewRepository reviewRepository;
 
   private static final LoggingPreferences LOG_PREFERENCES;
@@ -83,6 +86,7 @@ class ReviewCreationWT extends AbstractWebTest {
   void tearDown() {
     this.reviewRepository.deleteAll();
     this.bookRepository.deleteAll();
+    this.bookCatalogCache.invalidate();
 
     for (LogEntry logEntry : getWebDriver().manage().logs().get(LogType.BROWSER)) {
       LOG.info(logEntry.getMessage());
@@ -155,5 +159,6 @@ class ReviewCreationWT extends AbstractWebTest {
     book.setGenre("Software Development");
 
     this.bookRepository.save(book);
+    this.bookCatalogCache.invalidate();
   }
 }
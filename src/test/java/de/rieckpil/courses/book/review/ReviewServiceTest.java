@@ -11,6 +11,7 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,6 +27,8 @@ class ReviewServiceTest {
 
   @Mock private ReviewRepository reviewRepository;
 
+  @Mock private ApplicationEventPublisher applicationEventPublisher;
+
   @InjectMocks private ReviewService cut;
 
   private static final String EMAIL = "duke@spring.io";
@@ -65,6 +68,7 @@ class ReviewServiceTest {
 
     // assert - then
     verify(reviewRepository, times(0)).save(ArgumentMatchers.any(Review.class));
+    verifyNoInteractions(applicationEventPublisher);
   }
 
   @Test
@@ -88,5 +92,15 @@ class ReviewServiceTest {
 
     Long expected = 42L;
     assertEquals(expected, result);
+
+    verify(applicationEventPublisher).publishEvent(new ReviewChangedEvent(ISBN, 42L));
+  }
+
+  @Test
+  void shouldPublishEventWhenReviewIsDeleted() {
+    cut.deleteReview(ISBN, 42L);
+
+    verify(reviewRepository).deleteByIdAndBookIsbn(42L, ISBN);
+    verify(applicationEventPublisher).publishEvent(new ReviewChangedEvent(ISBN, 42L));
   }
 }
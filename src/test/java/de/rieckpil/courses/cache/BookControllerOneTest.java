@@ -2,10 +2,14 @@ package de.rieckpil.courses.cache;
 
 import java.util.List;
 
+import de.rieckpil.courses.book.ContentVersions;
+import de.rieckpil.courses.book.JsonResponseCache;
 import de.rieckpil.courses.book.management.Book;
 import de.rieckpil.courses.book.management.BookController;
+import de.rieckpil.courses.book.management.BookCoverStore;
 import de.rieckpil.courses.book.management.BookManagementService;
 import de.rieckpil.courses.config.WebSecurityConfig;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -25,13 +29,22 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(BookController.class)
 // see
 // https://github.com/spring-projects/spring-boot/wiki/Spring-Boot-2.7-Release-Notes#migrating-from-websecurityconfigureradapter-to-securityfilterchain
-@Import(WebSecurityConfig.class)
+@Import({WebSecurityConfig.class, ContentVersions.class, JsonResponseCache.class})
 class BookControllerOneTest {
 
   @MockBean private BookManagementService bookManagementService;
 
+  @MockBean private BookCoverStore bookCoverStore;
+
   @Autowired private MockMvc mockMvc;
 
+  @Autowired private JsonResponseCache jsonResponseCache;
+
+  @BeforeEach
+  void clearResponseCache() {
+    this.jsonResponseCache.clear();
+  }
+
   @Test
   void shouldGetEmptyArrayWhenNoBooksExists() throws Exception {
     MvcResult mvcResult =